@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.benchmark;
+
+import com.vaticle.typedb.common.collection.Collections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CollectionsBenchmark {
+
+    @Param({"100", "10000"})
+    public int size;
+
+    private Set<Long> small;
+    private Set<Long> large;
+    private Set<Long> disjoint;
+    private TreeSet<Long> sortedFirst;
+    private TreeSet<Long> sortedSecond;
+
+    // the small set overlaps half of the large one, as when joining a narrow pattern against a wide one
+    @Setup
+    public void setup() {
+        small = new HashSet<>();
+        large = new HashSet<>();
+        disjoint = new HashSet<>();
+        sortedFirst = new TreeSet<>();
+        sortedSecond = new TreeSet<>();
+        for (long i = 0; i < size; i++) {
+            large.add(i * 2);
+            if (i % 10 == 0) small.add(i * 2 + (i % 20 == 0 ? 0 : 1));
+            disjoint.add(i * 2 + 1);
+            sortedFirst.add(i * 2);
+            sortedSecond.add(i * 2 + 1);
+        }
+    }
+
+    @Benchmark
+    public Set<Long> intersection() {
+        return Collections.intersection(small, large);
+    }
+
+    @Benchmark
+    public Set<Long> intersectionOfEqualSizes() {
+        return Collections.intersection(large, disjoint);
+    }
+
+    @Benchmark
+    public boolean hasIntersectionDisjoint() {
+        return Collections.hasIntersection(large, disjoint);
+    }
+
+    @Benchmark
+    public boolean hasIntersectionSortedDisjoint() {
+        return Collections.hasIntersection(sortedFirst, sortedSecond);
+    }
+}
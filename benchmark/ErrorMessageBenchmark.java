@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.benchmark;
+
+import com.vaticle.typedb.common.exception.ErrorMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ErrorMessageBenchmark {
+
+    private static final BenchmarkError NO_PARAMETERS =
+            new BenchmarkError(1, "The transaction has been closed and no further operation is allowed.");
+    private static final BenchmarkError TWO_PARAMETERS =
+            new BenchmarkError(2, "The type '%s' is not a subtype of '%s' and cannot be used here.");
+    private static final BenchmarkError FORMATTED =
+            new BenchmarkError(3, "The query took %d ms, over the limit of %d ms.");
+
+    private final String label = "person";
+    private final String supertype = "entity";
+
+    @Benchmark
+    public String noParameters() {
+        return NO_PARAMETERS.message();
+    }
+
+    @Benchmark
+    public String twoParameters() {
+        return TWO_PARAMETERS.message(label, supertype);
+    }
+
+    @Benchmark
+    public String formatFallback() {
+        return FORMATTED.message(1250L, 1000L);
+    }
+
+    @Benchmark
+    public String stringFormat() {
+        return String.format(TWO_PARAMETERS.toString(), label, supertype);
+    }
+
+    private static class BenchmarkError extends ErrorMessage {
+
+        private BenchmarkError(int codeNumber, String messageBody) {
+            super("BEN", codeNumber, "Benchmark", messageBody);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.benchmark;
+
+import com.vaticle.typedb.common.collection.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PairBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private String[] labels;
+    private Long[] ids;
+    private Map<Pair<String, Long>, Integer> index;
+    private int next;
+
+    @Setup
+    public void setup() {
+        labels = new String[size];
+        ids = new Long[size];
+        index = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            labels[i] = "label-" + (i % 100);
+            ids[i] = (long) i;
+            index.put(new Pair<>(labels[i], ids[i]), i);
+        }
+    }
+
+    @Benchmark
+    public Pair<String, Long> construct() {
+        int i = next();
+        return new Pair<>(labels[i], ids[i]);
+    }
+
+    @Benchmark
+    public Integer lookup() {
+        int i = next();
+        return index.get(new Pair<>(labels[i], ids[i]));
+    }
+
+    private int next() {
+        int i = next;
+        next = i + 1 == size ? 0 : i + 1;
+        return i;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.benchmark;
+
+import com.vaticle.typedb.common.concurrent.Promise;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chains of continuations registered on a pending promise and then completed, against the same chains on a
+ * CompletableFuture.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PromiseBenchmark {
+
+    @Param({"1", "16"})
+    public int depth;
+
+    @Benchmark
+    public Integer promise() {
+        Promise<Integer> root = Promise.promise();
+        Promise<Integer> chain = root;
+        for (int i = 0; i < depth; i++) chain = chain.map(value -> value + 1);
+        root.complete(0);
+        return chain.join();
+    }
+
+    @Benchmark
+    public Integer completableFuture() {
+        CompletableFuture<Integer> root = new CompletableFuture<>();
+        CompletableFuture<Integer> chain = root;
+        for (int i = 0; i < depth; i++) chain = chain.thenApply(value -> value + 1);
+        root.complete(0);
+        return chain.join();
+    }
+
+    @Benchmark
+    public Integer promiseCompleted() {
+        Promise<Integer> chain = Promise.completed(0);
+        for (int i = 0; i < depth; i++) chain = chain.map(value -> value + 1);
+        return chain.join();
+    }
+
+    @Benchmark
+    public Integer completableFutureCompleted() {
+        CompletableFuture<Integer> chain = CompletableFuture.completedFuture(0);
+        for (int i = 0; i < depth; i++) chain = chain.thenApply(value -> value + 1);
+        return chain.join();
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.benchmark;
+
+import com.vaticle.typedb.common.collection.RadixTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exact and prefix lookups of schema labels, against a TreeMap of the same entries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RadixTrieBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private String[] keys;
+    private RadixTrie<Integer> trie;
+    private TreeMap<String, Integer> treeMap;
+    private int next;
+
+    @Setup
+    public void setup() {
+        keys = new String[size];
+        treeMap = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            keys[i] = "scope-" + (i % 50) + ":type-" + (i / 50) + ":role-" + i;
+            treeMap.put(keys[i], i);
+        }
+        trie = RadixTrie.of(treeMap);
+    }
+
+    @Benchmark
+    public Integer trieGet() {
+        return trie.get(nextKey());
+    }
+
+    @Benchmark
+    public Integer treeMapGet() {
+        return treeMap.get(nextKey());
+    }
+
+    @Benchmark
+    public void triePrefix(Blackhole blackhole) {
+        RadixTrie<Integer>.Cursor cursor = trie.prefix(nextPrefix());
+        while (cursor.advance()) blackhole.consume(cursor.value());
+    }
+
+    @Benchmark
+    public void treeMapPrefix(Blackhole blackhole) {
+        String prefix = nextPrefix();
+        for (Map.Entry<String, Integer> entry : treeMap.subMap(prefix, prefix + Character.MAX_VALUE).entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+
+    private String nextKey() {
+        int i = next;
+        next = i + 1 == size ? 0 : i + 1;
+        return keys[i];
+    }
+
+    private String nextPrefix() {
+        String key = nextKey();
+        return key.substring(0, key.indexOf(":role-") + 1);
+    }
+}
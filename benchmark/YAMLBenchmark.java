@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.benchmark;
+
+import com.vaticle.typedb.common.yaml.YAML;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class YAMLBenchmark {
+
+    // sections of a server configuration file
+    @Param({"10", "500"})
+    public int sections;
+
+    private String source;
+    private Path directory;
+    private Path file;
+    private Path snapshot;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < sections; i++) {
+            builder.append("section-").append(i).append(":\n")
+                    .append("  address: 0.0.0.0:").append(1729 + i).append('\n')
+                    .append("  enabled: ").append(i % 2 == 0).append('\n')
+                    .append("  ratio: ").append(i / 100.0).append('\n')
+                    .append("  paths:\n")
+                    .append("    - server/data/").append(i).append('\n')
+                    .append("    - server/logs/").append(i).append('\n');
+        }
+        source = builder.toString();
+        directory = Files.createTempDirectory("yaml-benchmark");
+        file = Files.writeString(directory.resolve("config.yml"), source);
+        snapshot = directory.resolve("config.snapshot");
+        YAML.load(file, snapshot);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(path);
+        }
+    }
+
+    @Benchmark
+    public YAML loadString() {
+        return YAML.load(source);
+    }
+
+    @Benchmark
+    public YAML loadFile() throws IOException {
+        return YAML.load(file);
+    }
+
+    @Benchmark
+    public YAML loadSnapshot() throws IOException {
+        return YAML.load(file, snapshot);
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+/**
+ * A Bloom filter over object keys, hashed by {@link Object#hashCode()}, or primitive long keys. The filter never gives
+ * false negatives, and answers false positives at roughly the rate it was sized for.
+ *
+ * Filters are not thread-safe, except those created by {@link #concurrent(long, double)}, which set bits atomically.
+ */
+public class BloomFilter {
+
+    final long[] words;
+    private final int hashes;
+    private final long bits;
+
+    BloomFilter(long[] words, int hashes) {
+        this.words = words;
+        this.hashes = hashes;
+        this.bits = (long) words.length * Long.SIZE;
+    }
+
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        return new BloomFilter(new long[words(expectedInsertions, falsePositiveRate)], hashes(expectedInsertions, falsePositiveRate));
+    }
+
+    public static BloomFilter concurrent(long expectedInsertions, double falsePositiveRate) {
+        return new Concurrent(new long[words(expectedInsertions, falsePositiveRate)], hashes(expectedInsertions, falsePositiveRate));
+    }
+
+    private static int words(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Bloom filter requires positive insertions and a false positive rate in (0, 1)");
+        }
+        double bits = -expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long words = (long) Math.ceil(bits / Long.SIZE);
+        if (words > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Bloom filter too large: " + words + " words");
+        return (int) Math.max(1, words);
+    }
+
+    private static int hashes(long expectedInsertions, double falsePositiveRate) {
+        long bits = (long) words(expectedInsertions, falsePositiveRate) * Long.SIZE;
+        return Math.max(1, (int) Math.round((double) bits / expectedInsertions * Math.log(2)));
+    }
+
+    public void add(Object key) {
+        addHash(Hashing.hash(key));
+    }
+
+    public void add(long key) {
+        addHash(Hashing.hash(key));
+    }
+
+    public boolean mightContain(Object key) {
+        return mightContainHash(Hashing.hash(key));
+    }
+
+    public boolean mightContain(long key) {
+        return mightContainHash(Hashing.hash(key));
+    }
+
+    /**
+     * Add all keys of another filter of the same size into this one.
+     */
+    public void merge(BloomFilter other) {
+        if (other.words.length != words.length || other.hashes != hashes) {
+            throw new IllegalArgumentException("Cannot merge Bloom filters of different sizes");
+        }
+        for (int i = 0; i < words.length; i++) orWord(i, other.word(i));
+    }
+
+    public long bitCount() {
+        long count = 0;
+        for (int i = 0; i < words.length; i++) count += Long.bitCount(word(i));
+        return count;
+    }
+
+    public double expectedFalsePositiveRate() {
+        return Math.pow((double) bitCount() / bits, hashes);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 2 + words.length * Long.BYTES);
+        buffer.putInt(hashes).putInt(words.length);
+        for (int i = 0; i < words.length; i++) buffer.putLong(word(i));
+        return buffer.array();
+    }
+
+    public static BloomFilter fromBytes(byte[] bytes) {
+        return fromBytes(bytes, false);
+    }
+
+    public static BloomFilter fromBytes(byte[] bytes, boolean concurrent) {
+        if (bytes.length < Integer.BYTES * 2) throw new IllegalArgumentException("Bytes do not hold a serialized BloomFilter");
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int hashes = buffer.getInt(), length = buffer.getInt();
+        if (hashes < 1 || length < 1 || buffer.remaining() != (long) length * Long.BYTES) {
+            throw new IllegalArgumentException("Bytes do not hold a serialized BloomFilter");
+        }
+        long[] words = new long[length];
+        for (int i = 0; i < words.length; i++) words[i] = buffer.getLong();
+        return concurrent ? new Concurrent(words, hashes) : new BloomFilter(words, hashes);
+    }
+
+    private void addHash(long hash) {
+        long h2 = Hashing.mix(hash) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(hash + i * h2, bits);
+            orWord((int) (bit >>> 6), 1L << bit);
+        }
+    }
+
+    private boolean mightContainHash(long hash) {
+        long h2 = Hashing.mix(hash) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Long.remainderUnsigned(hash + i * h2, bits);
+            if ((word((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    long word(int index) {
+        return words[index];
+    }
+
+    void orWord(int index, long mask) {
+        words[index] |= mask;
+    }
+
+    private static class Concurrent extends BloomFilter {
+
+        private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+        private Concurrent(long[] words, int hashes) {
+            super(words, hashes);
+        }
+
+        @Override
+        long word(int index) {
+            return (long) WORDS.getAcquire(words, index);
+        }
+
+        @Override
+        void orWord(int index, long mask) {
+            if ((word(index) & mask) != mask) WORDS.getAndBitwiseOrRelease(words, index, mask);
+        }
+    }
+}
@@ -17,6 +17,7 @@
 
 package com.vaticle.typedb.common.collection;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 import static com.vaticle.typedb.common.collection.Collections.map;
@@ -56,4 +57,14 @@ public class Bytes {
         // TODO when hexChars is a byte[]: return new String(hexChars, StandardCharsets.UTF_8);
         return PREFIX + new String(hexChars);
     }
+
+    /**
+     * Unsigned lexicographic comparison of the remaining bytes of two buffers, without copying them out.
+     */
+    public static int compare(ByteBuffer first, ByteBuffer second) {
+        int i = first.mismatch(second);
+        if (i < 0) return 0;
+        if (i == first.remaining() || i == second.remaining()) return first.remaining() - second.remaining();
+        return Byte.compareUnsigned(first.get(first.position() + i), second.get(second.position() + i));
+    }
 }
@@ -0,0 +1,570 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import com.vaticle.typedb.common.concurrent.NamedThreadFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * A bounded, concurrent cache with W-TinyLFU eviction. Entries first enter a small LRU window, and leave it for the
+ * main segmented LRU only if an approximate frequency sketch shows them to be accessed more often than the entry they
+ * would displace. This keeps popular entries resident through bursts of one-off keys.
+ *
+ * Reads go straight to a ConcurrentHashMap, and record their access in a ring buffer which is replayed against the
+ * eviction policy by whichever thread next holds the policy lock, so contended reads are not blocked on the policy
+ * unless the buffer is full. Writes and evictions take the policy lock.
+ */
+public class Cache<K, V> {
+
+    private static final double WINDOW_RATIO = 0.01;
+    private static final double PROTECTED_RATIO = 0.8;
+    private static final int READ_BUFFER_SIZE = 128;
+
+    private final ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<K, Load<V>> loading = new ConcurrentHashMap<>();
+    private final ReentrantLock policyLock = new ReentrantLock();
+    // hits are buffered as their node, and misses as their key
+    private final AtomicReferenceArray<Object> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong readTail = new AtomicLong();
+    private volatile long readHead;
+    private final FrequencySketch sketch;
+    private final Queue<K, V> window = new Queue<>();
+    private final Queue<K, V> probation = new Queue<>();
+    private final Queue<K, V> protect = new Queue<>();
+    private final long maximumWeight;
+    private final long maximumWindowWeight;
+    private final long maximumProtectedWeight;
+    private final BiFunction<K, V, Integer> weigher;
+    private final long expireAfterWriteNanos;
+    private final long expireAfterAccessNanos;
+    private final Executor executor;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private long windowWeight;
+    private long protectedWeight;
+    private long totalWeight;
+
+    private Cache(Builder<K, V> builder) {
+        this.maximumWeight = builder.maximumWeight;
+        this.maximumWindowWeight = Math.max(1, (long) (maximumWeight * WINDOW_RATIO));
+        this.maximumProtectedWeight = (long) ((maximumWeight - maximumWindowWeight) * PROTECTED_RATIO);
+        this.weigher = builder.weigher;
+        this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+        this.expireAfterAccessNanos = builder.expireAfterAccessNanos;
+        this.executor = builder.executor != null ? builder.executor : Loaders.EXECUTOR;
+        this.sketch = new FrequencySketch(maximumWeight == Long.MAX_VALUE ? 0 : Math.min(maximumWeight, 1 << 20));
+    }
+
+    public static <K, V> Builder<K, V> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @return the cached value, or null if it is absent or expired
+     */
+    public V getIfPresent(K key) {
+        Node<K, V> node = data.get(key);
+        long now = System.nanoTime();
+        if (node == null || expired(node, now)) {
+            if (node != null) invalidate(node);
+            misses.increment();
+            recordAccess(key, null);
+            return null;
+        }
+        hits.increment();
+        node.accessTime = now;
+        recordAccess(key, node);
+        return node.value;
+    }
+
+    /**
+     * @return the cached value, computing it with the loader on the calling thread if absent. Concurrent calls for the
+     * same key share a single load.
+     * @throws IllegalStateException if the loader recursively loads the same key
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = getIfPresent(key);
+        if (value != null) return value;
+        Load<V> future = new Load<>();
+        Load<V> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            if (existing.loader == Thread.currentThread()) throw new IllegalStateException("Recursive load of key: " + key);
+            return existing.join();
+        }
+        load(key, loader, future);
+        return future.join();
+    }
+
+    /**
+     * @return the cached value, or a future of the value computed by the loader on the cache's executor
+     */
+    public CompletableFuture<V> getAsync(K key, Function<? super K, ? extends V> loader) {
+        V value = getIfPresent(key);
+        if (value != null) return CompletableFuture.completedFuture(value);
+        Load<V> future = new Load<>();
+        Load<V> existing = loading.putIfAbsent(key, future);
+        if (existing != null) return existing;
+        executor.execute(() -> load(key, loader, future));
+        return future;
+    }
+
+    private void load(K key, Function<? super K, ? extends V> loader, Load<V> future) {
+        future.loader = Thread.currentThread();
+        try {
+            V value = Objects.requireNonNull(loader.apply(key), "Cache loader returned null for key: " + key);
+            put(key, value);
+            loadSuccesses.increment();
+            future.complete(value);
+        } catch (Throwable e) {
+            loadFailures.increment();
+            future.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+        } finally {
+            future.loader = null;
+            loading.remove(key, future);
+        }
+    }
+
+    public void put(K key, V value) {
+        Objects.requireNonNull(value);
+        int weight = weigher.apply(key, value);
+        if (weight < 0) throw new IllegalArgumentException("Negative weight for key: " + key);
+        long now = System.nanoTime();
+        policyLock.lock();
+        try {
+            // the value and its weight change together, under the policy lock
+            Node<K, V> node = data.compute(key, (k, existing) -> {
+                if (existing == null) return new Node<>(key, value, weight, now);
+                existing.value = value;
+                existing.writeTime = now;
+                existing.accessTime = now;
+                return existing;
+            });
+            drainReads();
+            if (node.queue == null) {
+                totalWeight += weight;
+                windowWeight += weight;
+                window.add(node);
+                sketch.increment(key.hashCode());
+            } else {
+                adjustWeight(node, weight - node.weight);
+            }
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node != null) unlink(node);
+    }
+
+    public void invalidateAll() {
+        for (K key : data.keySet()) invalidate(key);
+    }
+
+    /**
+     * Remove all expired entries. Expired entries are otherwise only removed when read or evicted.
+     */
+    public void cleanUp() {
+        long now = System.nanoTime();
+        for (Node<K, V> node : data.values()) {
+            if (expired(node, now)) invalidate(node);
+        }
+    }
+
+    public long estimatedSize() {
+        return data.size();
+    }
+
+    public long weightedSize() {
+        policyLock.lock();
+        try {
+            drainReads();
+            return totalWeight;
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), loadSuccesses.sum(), loadFailures.sum());
+    }
+
+    private boolean expired(Node<K, V> node, long now) {
+        return (expireAfterWriteNanos > 0 && now - node.writeTime >= expireAfterWriteNanos) ||
+                (expireAfterAccessNanos > 0 && now - node.accessTime >= expireAfterAccessNanos);
+    }
+
+    private void invalidate(Node<K, V> node) {
+        if (data.remove(node.key, node)) unlink(node);
+    }
+
+    private void unlink(Node<K, V> node) {
+        policyLock.lock();
+        try {
+            node.removed = true;
+            if (node.queue != null) detach(node);
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    private void recordAccess(K key, Node<K, V> node) {
+        Object access = node != null ? node : key;
+        while (true) {
+            long tail = readTail.get();
+            if (tail - readHead >= READ_BUFFER_SIZE) {
+                policyLock.lock();
+                try {
+                    drainReads();
+                } finally {
+                    policyLock.unlock();
+                }
+            } else if (readTail.compareAndSet(tail, tail + 1)) {
+                readBuffer.lazySet((int) tail & (READ_BUFFER_SIZE - 1), access);
+                break;
+            }
+        }
+        if (policyLock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    // must hold the policy lock
+    @SuppressWarnings("unchecked")
+    private void drainReads() {
+        long head = readHead;
+        long tail = readTail.get();
+        while (head < tail) {
+            int index = (int) head & (READ_BUFFER_SIZE - 1);
+            Object access = readBuffer.get(index);
+            if (access == null) break; // claimed, but not yet written
+            readBuffer.lazySet(index, null);
+            head++;
+            if (access instanceof Node) onAccess((Node<K, V>) access);
+            else sketch.increment(access.hashCode());
+        }
+        readHead = head;
+    }
+
+    // must hold the policy lock
+    private void onAccess(Node<K, V> node) {
+        sketch.increment(node.key.hashCode());
+        if (node.removed || node.queue == null) return;
+        if (node.queue == probation) {
+            probation.remove(node);
+            protect.add(node);
+            protectedWeight += node.weight;
+            while (protectedWeight > maximumProtectedWeight && protect.head != null) {
+                Node<K, V> demoted = protect.head;
+                protect.remove(demoted);
+                protectedWeight -= demoted.weight;
+                probation.add(demoted);
+            }
+        } else {
+            node.queue.moveToTail(node);
+        }
+    }
+
+    private void adjustWeight(Node<K, V> node, int delta) {
+        node.weight += delta;
+        totalWeight += delta;
+        if (node.queue == window) windowWeight += delta;
+        else if (node.queue == protect) protectedWeight += delta;
+    }
+
+    private void detach(Node<K, V> node) {
+        totalWeight -= node.weight;
+        if (node.queue == window) windowWeight -= node.weight;
+        else if (node.queue == protect) protectedWeight -= node.weight;
+        node.queue.remove(node);
+    }
+
+    // must hold the policy lock
+    private void evict() {
+        Node<K, V> candidate = null;
+        while (windowWeight > maximumWindowWeight && window.head != null) {
+            Node<K, V> moved = window.head;
+            window.remove(moved);
+            windowWeight -= moved.weight;
+            probation.add(moved);
+            if (candidate == null) candidate = moved;
+        }
+        while (totalWeight > maximumWeight) {
+            Node<K, V> victim = probation.head;
+            Node<K, V> evicted;
+            if (victim == null) {
+                evicted = protect.head != null ? protect.head : window.head;
+            } else if (candidate == null || candidate == victim || candidate.queue != probation) {
+                evicted = victim;
+            } else if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                evicted = victim;
+            } else {
+                evicted = candidate;
+                candidate = candidate.next;
+            }
+            if (evicted == null) break;
+            detach(evicted);
+            evicted.removed = true;
+            if (data.remove(evicted.key, evicted)) evictions.increment();
+        }
+    }
+
+    // created on first use, and shared by all caches without their own executor
+    private static class Loaders {
+        private static final NamedThreadFactory THREAD_FACTORY = NamedThreadFactory.create(Cache.class, "loader");
+        private static final Executor EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = THREAD_FACTORY.newThread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static class Load<V> extends CompletableFuture<V> {
+
+        // the thread running the loader, so that it can detect its own recursive load
+        private volatile Thread loader;
+    }
+
+    private static class Node<K, V> {
+
+        private final K key;
+        private volatile V value;
+        private volatile long writeTime;
+        private volatile long accessTime;
+        private volatile boolean removed;
+        // guarded by the policy lock
+        private int weight;
+        private Queue<K, V> queue;
+        private Node<K, V> previous;
+        private Node<K, V> next;
+
+        private Node(K key, V value, int weight, long now) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = now;
+            this.accessTime = now;
+        }
+    }
+
+    /**
+     * An intrusive, doubly linked LRU queue, from least recently used at the head to most recently used at the tail.
+     */
+    private static class Queue<K, V> {
+
+        private Node<K, V> head;
+        private Node<K, V> tail;
+
+        private void add(Node<K, V> node) {
+            node.queue = this;
+            node.previous = tail;
+            node.next = null;
+            if (tail == null) head = node;
+            else tail.next = node;
+            tail = node;
+        }
+
+        private void remove(Node<K, V> node) {
+            if (node.previous == null) head = node.next;
+            else node.previous.next = node.next;
+            if (node.next == null) tail = node.previous;
+            else node.next.previous = node.previous;
+            node.previous = null;
+            node.next = null;
+            node.queue = null;
+        }
+
+        private void moveToTail(Node<K, V> node) {
+            if (tail == node) return;
+            remove(node);
+            add(node);
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters, which are all halved once the number of increments reaches ten times the
+     * width, so that frequencies age and the sketch adapts to changing access patterns.
+     */
+    private static class FrequencySketch {
+
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int size;
+
+        private FrequencySketch(long expectedEntries) {
+            int width = (int) Math.max(16, Long.highestOneBit(Math.max(1, expectedEntries) * 2 - 1));
+            this.table = new long[width];
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+        }
+
+        private int frequency(int hash) {
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < SEEDS.length; i++) frequency = Math.min(frequency, counter(hash, i));
+            return frequency;
+        }
+
+        private void increment(int hash) {
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                long h = Hashing.mix(hash * SEEDS[i]);
+                int index = (int) h & mask;
+                int shift = (((int) (h >>> 32) & 3) << 2) + (i << 4);
+                if (((table[index] >>> shift) & 0xFL) != 0xFL) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++size >= sampleSize) reset();
+        }
+
+        private int counter(int hash, int i) {
+            long h = Hashing.mix(hash * SEEDS[i]);
+            int shift = (((int) (h >>> 32) & 3) << 2) + (i << 4);
+            return (int) ((table[(int) h & mask] >>> shift) & 0xFL);
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) table[i] = (table[i] >>> 1) & RESET_MASK;
+            size /= 2;
+        }
+    }
+
+    public static class Stats {
+
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long loadSuccesses;
+        private final long loadFailures;
+
+        private Stats(long hits, long misses, long evictions, long loadSuccesses, long loadFailures) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.loadSuccesses = loadSuccesses;
+            this.loadFailures = loadFailures;
+        }
+
+        public long hits() {
+            return hits;
+        }
+
+        public long misses() {
+            return misses;
+        }
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 1.0 : (double) hits / requests;
+        }
+
+        public long evictions() {
+            return evictions;
+        }
+
+        public long loadSuccesses() {
+            return loadSuccesses;
+        }
+
+        public long loadFailures() {
+            return loadFailures;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("stats(hits: %d, misses: %d, evictions: %d, loadSuccesses: %d, loadFailures: %d)",
+                                 hits, misses, evictions, loadSuccesses, loadFailures);
+        }
+    }
+
+    public static class Builder<K, V> {
+
+        private long maximumWeight = Long.MAX_VALUE;
+        private BiFunction<K, V, Integer> weigher = (key, value) -> 1;
+        private long expireAfterWriteNanos = 0;
+        private long expireAfterAccessNanos = 0;
+        private Executor executor = null;
+
+        private Builder() {
+        }
+
+        public Builder<K, V> maximumSize(long maximumSize) {
+            return maximumWeight(maximumSize);
+        }
+
+        public Builder<K, V> maximumWeight(long maximumWeight) {
+            if (maximumWeight <= 0) throw new IllegalArgumentException("Maximum weight must be positive");
+            this.maximumWeight = maximumWeight;
+            return this;
+        }
+
+        public Builder<K, V> weigher(BiFunction<K, V, Integer> weigher) {
+            this.weigher = weigher;
+            return this;
+        }
+
+        public Builder<K, V> expireAfterWrite(Duration duration) {
+            this.expireAfterWriteNanos = duration.toNanos();
+            return this;
+        }
+
+        public Builder<K, V> expireAfterAccess(Duration duration) {
+            this.expireAfterAccessNanos = duration.toNanos();
+            return this;
+        }
+
+        /**
+         * The executor for asynchronous loads, which otherwise run on a cached pool of threads named after the cache
+         */
+        public Builder<K, V> executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public Cache<K, V> build() {
+            return new Cache<>(this);
+        }
+    }
+}
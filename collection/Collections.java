@@ -30,6 +30,9 @@ import java.util.Set;
 
 public class Collections {
 
+    private static final Interner<Pair<?, ?>> PAIRS = new Interner<>();
+    private static final Interner<Triple<?, ?, ?>> TRIPLES = new Interner<>();
+
     @SafeVarargs
     public static <K, V> Map<K, V> map(Pair<K, V>... pairs) {
         Map<K, V> map = new HashMap<>();
@@ -61,6 +64,16 @@ public class Collections {
         return java.util.Collections.unmodifiableSet(combined);
     }
 
+    /**
+     * Extend a persistent set without copying it, sharing structure with the original
+     */
+    @SafeVarargs
+    public static <T> PersistentSet<T> set(PersistentSet<T> set, T item, T... items) {
+        PersistentSet<T> extended = set.plus(item);
+        for (T next : items) extended = extended.plus(next);
+        return extended;
+    }
+
     @SafeVarargs
     public static <T> Set<T> concatToSet(Collection<? extends T> collection, Collection<? extends T>... collections) {
         Set<T> combined = new HashSet<>(collection);
@@ -68,6 +81,12 @@ public class Collections {
         return java.util.Collections.unmodifiableSet(combined);
     }
 
+    @SafeVarargs
+    public static <T> PersistentSet<T> concatToSet(PersistentSet<T> set, Collection<? extends T>... collections) {
+        for (Collection<? extends T> c : collections) set = set.plusAll(c);
+        return set;
+    }
+
     @SafeVarargs
     public static <T> List<T> list(T... items) {
         return java.util.Collections.unmodifiableList(Arrays.asList(items));
@@ -86,6 +105,16 @@ public class Collections {
         return java.util.Collections.unmodifiableList(combined);
     }
 
+    /**
+     * Extend a persistent list without copying it, sharing structure with the original
+     */
+    @SafeVarargs
+    public static <T> PersistentVector<T> list(PersistentVector<T> list, T item, T... items) {
+        PersistentVector<T> extended = list.append(item);
+        for (T next : items) extended = extended.append(next);
+        return extended;
+    }
+
     @SafeVarargs
     public static <T> List<T> concatToList(Collection<? extends T> collection, Collection<? extends T>... collections) {
         List<T> combined = new ArrayList<>(collection);
@@ -93,6 +122,34 @@ public class Collections {
         return java.util.Collections.unmodifiableList(combined);
     }
 
+    @SafeVarargs
+    public static <T> PersistentVector<T> concatToList(PersistentVector<T> list, Collection<? extends T>... collections) {
+        for (Collection<? extends T> c : collections) list = list.appendAll(c);
+        return list;
+    }
+
+    /**
+     * Lazy, read-only concatenation of lists, which avoids copying when the result is only iterated or indexed
+     */
+    @SafeVarargs
+    public static <T> List<T> concatView(List<? extends T> list, List<? extends T>... lists) {
+        List<List<? extends T>> parts = new ArrayList<>(lists.length + 1);
+        parts.add(list);
+        for (List<? extends T> next : lists) parts.add(next);
+        return new ConcatList<>(parts);
+    }
+
+    /**
+     * Lazy, read-only union of sets, which avoids copying when the result is only iterated or tested for membership
+     */
+    @SafeVarargs
+    public static <T> Set<T> unionView(Set<? extends T> set, Set<? extends T>... sets) {
+        List<Set<? extends T>> parts = new ArrayList<>(sets.length + 1);
+        parts.add(set);
+        for (Set<? extends T> next : sets) parts.add(next);
+        return new UnionSet<>(parts);
+    }
+
     public static <A, B> Pair<A, B> pair(A first, B second) {
         return new Pair<>(first, second);
     }
@@ -101,6 +158,19 @@ public class Collections {
         return new Triple<>(first, second, third);
     }
 
+    /**
+     * A canonical instance of the pair, shared with equal pairs interned before it and still in use
+     */
+    @SuppressWarnings("unchecked")
+    public static <A, B> Pair<A, B> internedPair(A first, B second) {
+        return (Pair<A, B>) PAIRS.intern(new Pair<>(first, second));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <A, B, C> Triple<A, B, C> internedTriple(A first, B second, C third) {
+        return (Triple<A, B, C>) TRIPLES.intern(new Triple<>(first, second, third));
+    }
+
     @SafeVarargs
     public static <T> boolean containsAll(Collection<T> collection, T... values) {
         for (T value : values) {
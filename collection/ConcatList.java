@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * A read-only view of several lists in sequence. The part holding an index is found by binary search over a table of
+ * part offsets, which is built once, so the view assumes its parts are not resized while it is in use.
+ */
+class ConcatList<T> extends AbstractList<T> implements RandomAccess {
+
+    private final List<List<? extends T>> parts;
+    private final int[] offsets;
+    private final int size;
+
+    ConcatList(List<List<? extends T>> parts) {
+        this.parts = parts;
+        this.offsets = new int[parts.size()];
+        int size = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            offsets[i] = size;
+            size += parts.get(i).size();
+        }
+        this.size = size;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        int part = Arrays.binarySearch(offsets, index);
+        if (part < 0) part = -part - 2;
+        else while (part + 1 < parts.size() && offsets[part + 1] == index) part++; // skip empty parts
+        return parts.get(part).get(index - offsets[part]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        for (List<? extends T> part : parts) {
+            if (part.contains(o)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+
+            private int part = 0;
+            private Iterator<? extends T> current = parts.isEmpty() ? null : parts.get(0).iterator();
+
+            @Override
+            public boolean hasNext() {
+                if (current == null) return false;
+                while (!current.hasNext() && part + 1 < parts.size()) current = parts.get(++part).iterator();
+                return current.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+        };
+    }
+}
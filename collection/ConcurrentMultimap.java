@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.collection;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Collections.unmodifiableSet;
+
+/**
+ * A concurrent map from each key to a set of values. Every update to a key is atomic, and a key is removed as soon as
+ * its last value is. A key with a single value stores that value directly; only keys with several values hold a
+ * {@link ConcurrentSet}. Reads do not lock, and the sets they return are weakly consistent views.
+ */
+public class ConcurrentMultimap<K, V> {
+
+    private final ConcurrentHashMap<K, Object> map;
+    private final LongAdder size;
+
+    public ConcurrentMultimap() {
+        this(16);
+    }
+
+    public ConcurrentMultimap(int expectedKeys) {
+        this.map = new ConcurrentHashMap<>(expectedKeys);
+        this.size = new LongAdder();
+    }
+
+    /**
+     * @return true if the value was not already held under the key
+     */
+    public boolean put(K key, V value) {
+        Objects.requireNonNull(value);
+        boolean[] added = {false};
+        map.compute(key, (k, current) -> {
+            if (current == null) {
+                added[0] = true;
+                return value;
+            } else if (current instanceof Values) {
+                added[0] = values(current).add(value);
+                return current;
+            } else if (current.equals(value)) {
+                return current;
+            } else {
+                added[0] = true;
+                return new Values<>(current, value);
+            }
+        });
+        if (added[0]) size.increment();
+        return added[0];
+    }
+
+    /**
+     * @return true if any of the values was not already held under the key
+     */
+    public boolean putAll(K key, Collection<? extends V> values) {
+        if (values.isEmpty()) return false;
+        int[] added = {0};
+        map.compute(key, (k, current) -> {
+            Object result = current;
+            for (V value : values) {
+                Objects.requireNonNull(value);
+                if (result == null) {
+                    result = value;
+                    added[0]++;
+                } else if (result instanceof Values) {
+                    if (values(result).add(value)) added[0]++;
+                } else if (!result.equals(value)) {
+                    result = new Values<>(result, value);
+                    added[0]++;
+                }
+            }
+            return result;
+        });
+        size.add(added[0]);
+        return added[0] > 0;
+    }
+
+    public void putAll(Map<? extends K, ? extends Collection<? extends V>> entries) {
+        entries.forEach(this::putAll);
+    }
+
+    /**
+     * @return true if the value was held under the key
+     */
+    public boolean remove(K key, V value) {
+        boolean[] removed = {false};
+        map.computeIfPresent(key, (k, current) -> {
+            if (current instanceof Values) {
+                Values<V> values = values(current);
+                removed[0] = values.remove(value);
+                return values.size() == 1 ? values.iterator().next() : values;
+            } else if (current.equals(value)) {
+                removed[0] = true;
+                return null;
+            } else {
+                return current;
+            }
+        });
+        if (removed[0]) size.decrement();
+        return removed[0];
+    }
+
+    /**
+     * @return the values that were held under the key
+     */
+    public Set<V> removeAll(K key) {
+        Object removed = map.remove(key);
+        if (removed == null) return emptySet();
+        Set<V> values = view(removed);
+        size.add(-values.size());
+        return values;
+    }
+
+    /**
+     * @return a read-only view of the values held under the key, which may not reflect later updates
+     */
+    public Set<V> get(K key) {
+        Object current = map.get(key);
+        return current == null ? emptySet() : view(current);
+    }
+
+    public boolean containsKey(K key) {
+        return map.containsKey(key);
+    }
+
+    public boolean contains(K key, V value) {
+        Object current = map.get(key);
+        if (current == null) return false;
+        else if (current instanceof Values) return values(current).contains(value);
+        else return current.equals(value);
+    }
+
+    public Set<K> keySet() {
+        return unmodifiableSet(map.keySet());
+    }
+
+    public int keyCount() {
+        return map.size();
+    }
+
+    /**
+     * @return the number of key-value pairs, which is only exact in the absence of concurrent updates
+     */
+    public long size() {
+        return size.sum();
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    public void clear() {
+        for (K key : map.keySet()) removeAll(key);
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        map.forEach((key, current) -> forEachValue(key, current, action));
+    }
+
+    /**
+     * Apply the action to every key-value pair, splitting the keys over the common ForkJoinPool once there are at least
+     * parallelismThreshold of them. The action must be safe to call concurrently.
+     */
+    public void forEach(long parallelismThreshold, BiConsumer<? super K, ? super V> action) {
+        map.forEach(parallelismThreshold, (key, current) -> forEachValue(key, current, action));
+    }
+
+    /**
+     * Apply the action to every key and its values, splitting the keys over the common ForkJoinPool once there are at
+     * least parallelismThreshold of them. The action must be safe to call concurrently.
+     */
+    public void forEachKey(long parallelismThreshold, BiConsumer<? super K, ? super Set<V>> action) {
+        map.forEach(parallelismThreshold, (key, current) -> action.accept(key, view(current)));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        map.forEach((key, current) -> {
+            if (builder.length() > 1) builder.append(", ");
+            builder.append(key).append('=').append(view(current));
+        });
+        return builder.append('}').toString();
+    }
+
+    private void forEachValue(K key, Object current, BiConsumer<? super K, ? super V> action) {
+        if (current instanceof Values) {
+            for (V value : ConcurrentMultimap.<V>values(current)) action.accept(key, value);
+        } else {
+            action.accept(key, single(current));
+        }
+    }
+
+    // expose the backing key set, as ConcurrentSet only equals other ConcurrentSets
+    private Set<V> view(Object current) {
+        return current instanceof Values ? unmodifiableSet(ConcurrentMultimap.<V>values(current).concurrentSet) : singleton(single(current));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Values<V> values(Object current) {
+        return (Values<V>) current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V single(Object current) {
+        return (V) current;
+    }
+
+    // a distinct type, so that a key's set of values can never be mistaken for a single value
+    private static class Values<V> extends ConcurrentSet<V> {
+
+        @SuppressWarnings("unchecked")
+        private Values(Object first, V second) {
+            add((V) first);
+            add(second);
+        }
+    }
+}
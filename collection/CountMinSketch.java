@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.collection;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+/**
+ * A Count-Min sketch, estimating how often each object key, hashed by {@link Object#hashCode()}, or primitive long
+ * key was added to it. Estimates never fall below the true count, and with probability 1 - confidence they exceed it
+ * by at most error times the total count.
+ *
+ * Sketches are not thread-safe, except those created by {@link #concurrent(double, double)}, which update counters
+ * atomically.
+ */
+public class CountMinSketch {
+
+    final long[] counters;
+    private final int depth;
+    private final int width;
+
+    CountMinSketch(long[] counters, int depth, int width) {
+        this.counters = counters;
+        this.depth = depth;
+        this.width = width;
+    }
+
+    public static CountMinSketch create(double error, double confidence) {
+        int width = width(error), depth = depth(confidence);
+        return new CountMinSketch(new long[depth * width], depth, width);
+    }
+
+    public static CountMinSketch concurrent(double error, double confidence) {
+        int width = width(error), depth = depth(confidence);
+        return new Concurrent(new long[depth * width], depth, width);
+    }
+
+    private static int width(double error) {
+        if (error <= 0 || error >= 1) throw new IllegalArgumentException("Count-Min error must be within (0, 1)");
+        long width = Long.highestOneBit((long) Math.ceil(Math.E / error) - 1) << 1;
+        if (width > 1 << 26) throw new IllegalArgumentException("Count-Min sketch too large for error " + error);
+        return (int) Math.max(2, width);
+    }
+
+    private static int depth(double confidence) {
+        if (confidence <= 0 || confidence >= 1) {
+            throw new IllegalArgumentException("Count-Min confidence must be within (0, 1)");
+        }
+        return Math.max(1, (int) Math.ceil(Math.log(1 / (1 - confidence))));
+    }
+
+    public void add(Object key) {
+        addHash(Hashing.hash(key), 1);
+    }
+
+    public void add(Object key, long count) {
+        addHash(Hashing.hash(key), count);
+    }
+
+    public void add(long key) {
+        addHash(Hashing.hash(key), 1);
+    }
+
+    public void add(long key, long count) {
+        addHash(Hashing.hash(key), count);
+    }
+
+    public long estimate(Object key) {
+        return estimateHash(Hashing.hash(key));
+    }
+
+    public long estimate(long key) {
+        return estimateHash(Hashing.hash(key));
+    }
+
+    /**
+     * @return the sum of the counts of all keys added
+     */
+    public long totalCount() {
+        long total = 0;
+        for (int i = 0; i < width; i++) total += counter(i);
+        return total;
+    }
+
+    /**
+     * Estimate the size of the join of the two multisets of keys, which is the sum over keys of the product of their
+     * counts. Like single key estimates, it never falls below the true size.
+     */
+    public long innerProduct(CountMinSketch other) {
+        checkCompatible(other);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            long sum = 0;
+            for (int i = row * width; i < (row + 1) * width; i++) sum += counter(i) * other.counter(i);
+            estimate = Math.min(estimate, sum);
+        }
+        return estimate;
+    }
+
+    /**
+     * Add all counts of another sketch of the same dimensions into this one.
+     */
+    public void merge(CountMinSketch other) {
+        checkCompatible(other);
+        for (int i = 0; i < counters.length; i++) addCounter(i, other.counter(i));
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 2 + counters.length * Long.BYTES);
+        buffer.putInt(depth).putInt(width);
+        for (int i = 0; i < counters.length; i++) buffer.putLong(counter(i));
+        return buffer.array();
+    }
+
+    public static CountMinSketch fromBytes(byte[] bytes) {
+        return fromBytes(bytes, false);
+    }
+
+    public static CountMinSketch fromBytes(byte[] bytes, boolean concurrent) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.remaining() < Integer.BYTES * 2) {
+            throw new IllegalArgumentException("Bytes do not hold a serialized CountMinSketch");
+        }
+        int depth = buffer.getInt(), width = buffer.getInt();
+        if (depth < 1 || width < 2 || Integer.bitCount(width) != 1 ||
+                buffer.remaining() != (long) depth * width * Long.BYTES) {
+            throw new IllegalArgumentException("Bytes do not hold a serialized CountMinSketch");
+        }
+        long[] counters = new long[depth * width];
+        for (int i = 0; i < counters.length; i++) counters[i] = buffer.getLong();
+        return concurrent ? new Concurrent(counters, depth, width) : new CountMinSketch(counters, depth, width);
+    }
+
+    private void addHash(long hash, long count) {
+        if (count < 0) throw new IllegalArgumentException("Count-Min counts must not be negative");
+        long h2 = Hashing.mix(hash) | 1;
+        for (int row = 0; row < depth; row++) addCounter(row * width + (int) ((hash + row * h2) & (width - 1)), count);
+    }
+
+    private long estimateHash(long hash) {
+        long h2 = Hashing.mix(hash) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counter(row * width + (int) ((hash + row * h2) & (width - 1))));
+        }
+        return estimate;
+    }
+
+    private void checkCompatible(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot combine Count-Min sketches of different dimensions");
+        }
+    }
+
+    long counter(int index) {
+        return counters[index];
+    }
+
+    void addCounter(int index, long count) {
+        counters[index] += count;
+    }
+
+    private static class Concurrent extends CountMinSketch {
+
+        private static final VarHandle COUNTERS = MethodHandles.arrayElementVarHandle(long[].class);
+
+        private Concurrent(long[] counters, int depth, int width) {
+            super(counters, depth, width);
+        }
+
+        @Override
+        long counter(int index) {
+            return (long) COUNTERS.getAcquire(counters, index);
+        }
+
+        @Override
+        void addCounter(int index, long count) {
+            COUNTERS.getAndAddRelease(counters, index, count);
+        }
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A cuckoo filter over object keys, hashed by {@link Object#hashCode()}, or primitive long keys. It stores a 16-bit
+ * fingerprint per key in buckets of four, so unlike a Bloom filter it supports removal, at a false positive rate of
+ * roughly 8 / 2^16. Once an insertion fails to find room, the filter is full and further insertions are rejected.
+ *
+ * Filters are not thread-safe, except those created by {@link #concurrent(int)}, which lock the two buckets of a key,
+ * and only lock the whole filter to relocate fingerprints when both buckets are full.
+ */
+public class CuckooFilter {
+
+    private static final int BUCKET_SIZE = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double LOAD_FACTOR = 0.95;
+    private static final int HEADER_SIZE = Integer.BYTES * 3 + Short.BYTES;
+
+    final short[] table;
+    private final int mask;
+    private int size;
+    private short victim;
+    private int victimIndex;
+    private long random = 0x9e3779b97f4a7c15L;
+
+    CuckooFilter(short[] table, int size, short victim, int victimIndex) {
+        this.table = table;
+        this.mask = table.length / BUCKET_SIZE - 1;
+        this.size = size;
+        this.victim = victim;
+        this.victimIndex = victimIndex;
+    }
+
+    public static CuckooFilter create(int expectedInsertions) {
+        return new CuckooFilter(new short[slots(expectedInsertions)], 0, (short) 0, 0);
+    }
+
+    public static CuckooFilter concurrent(int expectedInsertions) {
+        return new Concurrent(new short[slots(expectedInsertions)], 0, (short) 0, 0);
+    }
+
+    private static int slots(int expectedInsertions) {
+        if (expectedInsertions <= 0) throw new IllegalArgumentException("Cuckoo filter requires positive insertions");
+        long buckets = Long.highestOneBit((long) Math.ceil(expectedInsertions / (BUCKET_SIZE * LOAD_FACTOR)) * 2 - 1);
+        if (buckets * BUCKET_SIZE > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Cuckoo filter too large");
+        return (int) Math.max(1, buckets) * BUCKET_SIZE;
+    }
+
+    public boolean add(Object key) {
+        return addHash(Hashing.hash(key));
+    }
+
+    public boolean add(long key) {
+        return addHash(Hashing.hash(key));
+    }
+
+    public boolean mightContain(Object key) {
+        return mightContainHash(Hashing.hash(key));
+    }
+
+    public boolean mightContain(long key) {
+        return mightContainHash(Hashing.hash(key));
+    }
+
+    /**
+     * Remove a key that was previously added. Removing a key that was never added may remove another key instead.
+     */
+    public boolean remove(Object key) {
+        return removeHash(Hashing.hash(key));
+    }
+
+    public boolean remove(long key) {
+        return removeHash(Hashing.hash(key));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return victim != 0;
+    }
+
+    /**
+     * Add all fingerprints of another filter of the same size into this one. The other filter must not be modified
+     * during the merge.
+     *
+     * @return false if this filter became full before all fingerprints were added
+     */
+    public boolean merge(CuckooFilter other) {
+        if (other.table.length != table.length) throw new IllegalArgumentException("Cannot merge cuckoo filters of different sizes");
+        for (int slot = 0; slot < other.table.length; slot++) {
+            if (other.table[slot] != 0 && !insert(other.table[slot], slot / BUCKET_SIZE)) return false;
+        }
+        return !other.isFull() || insert(other.victim, other.victimIndex);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + Short.BYTES * table.length);
+        buffer.putInt(table.length).putInt(size).putShort(victim).putInt(victimIndex);
+        for (short fingerprint : table) buffer.putShort(fingerprint);
+        return buffer.array();
+    }
+
+    public static CuckooFilter fromBytes(byte[] bytes) {
+        return fromBytes(bytes, false);
+    }
+
+    public static CuckooFilter fromBytes(byte[] bytes, boolean concurrent) {
+        if (bytes.length < HEADER_SIZE) throw new IllegalArgumentException("Bytes do not hold a serialized CuckooFilter");
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int slots = buffer.getInt(), size = buffer.getInt();
+        short victim = buffer.getShort();
+        int victimIndex = buffer.getInt();
+        if (slots < BUCKET_SIZE || slots % BUCKET_SIZE != 0 || Integer.bitCount(slots / BUCKET_SIZE) != 1
+                || buffer.remaining() != (long) slots * Short.BYTES || size < 0 || size > slots + 1
+                || victimIndex < 0 || victimIndex >= slots / BUCKET_SIZE) {
+            throw new IllegalArgumentException("Bytes do not hold a serialized CuckooFilter");
+        }
+        short[] table = new short[slots];
+        for (int i = 0; i < table.length; i++) table[i] = buffer.getShort();
+        return concurrent ? new Concurrent(table, size, victim, victimIndex) : new CuckooFilter(table, size, victim, victimIndex);
+    }
+
+    boolean addHash(long hash) {
+        return insert(fingerprint(hash), index(hash));
+    }
+
+    private boolean insert(short fingerprint, int index) {
+        if (victim != 0) return false;
+        int alternate = alternate(index, fingerprint);
+        if (put(index, fingerprint) || put(alternate, fingerprint)) {
+            addSize(1);
+            return true;
+        }
+        int bucket = (nextRandom() & 1) == 0 ? index : alternate;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int slot = bucket * BUCKET_SIZE + (nextRandom() & (BUCKET_SIZE - 1));
+            short evicted = table[slot];
+            table[slot] = fingerprint;
+            fingerprint = evicted;
+            bucket = alternate(bucket, fingerprint);
+            if (put(bucket, fingerprint)) {
+                addSize(1);
+                return true;
+            }
+        }
+        // keep the last evicted fingerprint, so no key that was added is lost
+        victim = fingerprint;
+        victimIndex = bucket;
+        addSize(1);
+        return true;
+    }
+
+    boolean mightContainHash(long hash) {
+        short fingerprint = fingerprint(hash);
+        int index = index(hash);
+        int alternate = alternate(index, fingerprint);
+        if (contains(index, fingerprint) || contains(alternate, fingerprint)) return true;
+        return victim == fingerprint && (victimIndex == index || victimIndex == alternate);
+    }
+
+    boolean removeHash(long hash) {
+        short fingerprint = fingerprint(hash);
+        int index = index(hash);
+        int alternate = alternate(index, fingerprint);
+        if (victim == fingerprint && (victimIndex == index || victimIndex == alternate)) {
+            victim = 0;
+            addSize(-1);
+            return true;
+        }
+        if (delete(index, fingerprint) || delete(alternate, fingerprint)) {
+            addSize(-1);
+            if (victim != 0) {
+                short pending = victim;
+                victim = 0;
+                addSize(-1);
+                insert(pending, victimIndex);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    void addSize(int delta) {
+        size += delta;
+    }
+
+    boolean put(int bucket, short fingerprint) {
+        for (int slot = bucket * BUCKET_SIZE, end = slot + BUCKET_SIZE; slot < end; slot++) {
+            if (table[slot] == 0) {
+                table[slot] = fingerprint;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean contains(int bucket, short fingerprint) {
+        for (int slot = bucket * BUCKET_SIZE, end = slot + BUCKET_SIZE; slot < end; slot++) {
+            if (table[slot] == fingerprint) return true;
+        }
+        return false;
+    }
+
+    boolean delete(int bucket, short fingerprint) {
+        for (int slot = bucket * BUCKET_SIZE, end = slot + BUCKET_SIZE; slot < end; slot++) {
+            if (table[slot] == fingerprint) {
+                table[slot] = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int index(long hash) {
+        return (int) (hash >>> 32) & mask;
+    }
+
+    int alternate(int index, short fingerprint) {
+        return (index ^ (int) Hashing.mix(fingerprint)) & mask;
+    }
+
+    static short fingerprint(long hash) {
+        short fingerprint = (short) hash;
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    private int nextRandom() {
+        random ^= random << 13;
+        random ^= random >>> 7;
+        random ^= random << 17;
+        return (int) random;
+    }
+
+    /**
+     * Each bucket is guarded by one of a fixed set of striped locks. An operation on a key holds the locks of its two
+     * buckets, so it never observes a fingerprint in the middle of being moved. The victim and the random state are
+     * only written while holding every lock, which an insertion takes when it has to evict fingerprints.
+     */
+    private static class Concurrent extends CuckooFilter {
+
+        private static final VarHandle SIZE;
+        private static final int MAX_STRIPES = 64;
+
+        static {
+            try {
+                SIZE = MethodHandles.lookup().findVarHandle(CuckooFilter.class, "size", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final ReentrantLock[] locks;
+
+        private Concurrent(short[] table, int size, short victim, int victimIndex) {
+            super(table, size, victim, victimIndex);
+            locks = new ReentrantLock[Math.min(MAX_STRIPES, table.length / BUCKET_SIZE)];
+            for (int i = 0; i < locks.length; i++) locks[i] = new ReentrantLock();
+        }
+
+        @Override
+        public int size() {
+            return (int) SIZE.getVolatile(this);
+        }
+
+        @Override
+        public boolean isFull() {
+            lockAll();
+            try {
+                return super.isFull();
+            } finally {
+                unlockAll();
+            }
+        }
+
+        @Override
+        public boolean merge(CuckooFilter other) {
+            lockAll();
+            try {
+                return super.merge(other);
+            } finally {
+                unlockAll();
+            }
+        }
+
+        @Override
+        public byte[] toBytes() {
+            lockAll();
+            try {
+                return super.toBytes();
+            } finally {
+                unlockAll();
+            }
+        }
+
+        @Override
+        boolean addHash(long hash) {
+            short fingerprint = fingerprint(hash);
+            int index = index(hash);
+            int alternate = alternate(index, fingerprint);
+            lock(index, alternate);
+            try {
+                if (super.isFull()) return false;
+                else if (put(index, fingerprint) || put(alternate, fingerprint)) {
+                    addSize(1);
+                    return true;
+                }
+            } finally {
+                unlock(index, alternate);
+            }
+            lockAll();
+            try {
+                return super.addHash(hash);
+            } finally {
+                unlockAll();
+            }
+        }
+
+        @Override
+        boolean mightContainHash(long hash) {
+            short fingerprint = fingerprint(hash);
+            int index = index(hash);
+            int alternate = alternate(index, fingerprint);
+            lock(index, alternate);
+            try {
+                return super.mightContainHash(hash);
+            } finally {
+                unlock(index, alternate);
+            }
+        }
+
+        @Override
+        boolean removeHash(long hash) {
+            short fingerprint = fingerprint(hash);
+            int index = index(hash);
+            int alternate = alternate(index, fingerprint);
+            lock(index, alternate);
+            try {
+                if (!super.isFull()) {
+                    if (!delete(index, fingerprint) && !delete(alternate, fingerprint)) return false;
+                    addSize(-1);
+                    return true;
+                }
+            } finally {
+                unlock(index, alternate);
+            }
+            // removing the victim, or making room for it, changes the victim
+            lockAll();
+            try {
+                return super.removeHash(hash);
+            } finally {
+                unlockAll();
+            }
+        }
+
+        @Override
+        void addSize(int delta) {
+            SIZE.getAndAdd(this, delta);
+        }
+
+        private void lock(int bucket, int other) {
+            int first = Math.min(stripe(bucket), stripe(other)), second = Math.max(stripe(bucket), stripe(other));
+            locks[first].lock();
+            if (second != first) locks[second].lock();
+        }
+
+        private void unlock(int bucket, int other) {
+            int first = stripe(bucket), second = stripe(other);
+            locks[first].unlock();
+            if (second != first) locks[second].unlock();
+        }
+
+        private void lockAll() {
+            for (ReentrantLock lock : locks) lock.lock();
+        }
+
+        private void unlockAll() {
+            for (int i = locks.length - 1; i >= 0; i--) locks[i].unlock();
+        }
+
+        private int stripe(int bucket) {
+            return bucket & (locks.length - 1);
+        }
+    }
+}
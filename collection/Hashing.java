@@ -0,0 +1,356 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.collection;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+/**
+ * Fast, seedable, non-cryptographic 64-bit hashing, following wyhash (final version 4) for byte sequences. Hashes
+ * are stable across JVMs and releases, so they may be used for sharding and consistent-hash routing, but they must
+ * not be relied on to resist deliberately colliding keys.
+ */
+public class Hashing {
+
+    private static final long SECRET_0 = 0x2d358dccaa6c78a5L;
+    private static final long SECRET_1 = 0x8bb84b93962eacc9L;
+    private static final long SECRET_2 = 0x4b33a62ed433d4a3L;
+    private static final long SECRET_3 = 0x4d5a2da51de1aa47L;
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * The finaliser of SplitMix64, which spreads every input bit over the whole 64-bit result
+     */
+    public static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    public static long hash(Object key) {
+        return mix(Objects.hashCode(key));
+    }
+
+    public static long hash(long key) {
+        return mix(key);
+    }
+
+    public static long hash(long key, long seed) {
+        return mix(key ^ mix(seed));
+    }
+
+    public static long hash(double key) {
+        return mix(java.lang.Double.doubleToLongBits(key));
+    }
+
+    public static long hash(byte[] bytes) {
+        return hash(bytes, 0, bytes.length, 0);
+    }
+
+    public static long hash(byte[] bytes, long seed) {
+        return hash(bytes, 0, bytes.length, seed);
+    }
+
+    public static long hash(byte[] bytes, int offset, int length, long seed) {
+        Objects.checkFromIndexSize(offset, length, bytes.length);
+        return hash(new ArrayReader(bytes), offset, length, seed);
+    }
+
+    /**
+     * Hash the remaining bytes of the buffer, without moving its position. Equal to {@link #hash(byte[], long)} of
+     * the same bytes, for heap and direct (including memory-mapped) buffers alike.
+     */
+    public static long hash(ByteBuffer buffer, long seed) {
+        if (buffer.hasArray()) {
+            return hash(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), seed);
+        }
+        ByteBuffer bytes = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        return hash(new BufferReader(bytes), 0, bytes.remaining(), seed);
+    }
+
+    public static long hash(ByteBuffer buffer) {
+        return hash(buffer, 0);
+    }
+
+    /**
+     * Combine two hashes, such as those of the elements of a tuple, into one. The combination is order-sensitive.
+     */
+    public static long combine(long first, long second) {
+        return wymix(first ^ SECRET_0, second ^ SECRET_1);
+    }
+
+    public static int hashCode(Object first, Object second) {
+        return fold(combine(hash(first), hash(second)));
+    }
+
+    public static int hashCode(Object first, Object second, Object third) {
+        return fold(combine(combine(hash(first), hash(second)), hash(third)));
+    }
+
+    public static int fold(long hash) {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    public static Streaming streaming() {
+        return new Streaming(0);
+    }
+
+    public static Streaming streaming(long seed) {
+        return new Streaming(seed);
+    }
+
+    private static long hash(Reader bytes, int offset, int length, long seed) {
+        seed ^= wymix(seed ^ SECRET_0, SECRET_1);
+        long a, b;
+        if (length <= 16) {
+            if (length >= 4) {
+                int shift = (length >>> 3) << 2;
+                a = (bytes.readInt(offset) << 32) | bytes.readInt(offset + shift);
+                b = (bytes.readInt(offset + length - 4) << 32) | bytes.readInt(offset + length - 4 - shift);
+            } else if (length > 0) {
+                a = (bytes.readByte(offset) << 16) | (bytes.readByte(offset + (length >>> 1)) << 8) |
+                        bytes.readByte(offset + length - 1);
+                b = 0;
+            } else {
+                a = b = 0;
+            }
+        } else {
+            int p = offset, i = length;
+            if (i > 48) {
+                long see1 = seed, see2 = seed;
+                do {
+                    seed = wymix(bytes.readLong(p) ^ SECRET_1, bytes.readLong(p + 8) ^ seed);
+                    see1 = wymix(bytes.readLong(p + 16) ^ SECRET_2, bytes.readLong(p + 24) ^ see1);
+                    see2 = wymix(bytes.readLong(p + 32) ^ SECRET_3, bytes.readLong(p + 40) ^ see2);
+                    p += 48;
+                    i -= 48;
+                } while (i > 48);
+                seed ^= see1 ^ see2;
+            }
+            while (i > 16) {
+                seed = wymix(bytes.readLong(p) ^ SECRET_1, bytes.readLong(p + 8) ^ seed);
+                p += 16;
+                i -= 16;
+            }
+            a = bytes.readLong(p + i - 16);
+            b = bytes.readLong(p + i - 8);
+        }
+        return finish(a, b, seed, length);
+    }
+
+    private static long finish(long a, long b, long seed, long length) {
+        a ^= SECRET_1;
+        b ^= seed;
+        long low = a * b;
+        long high = unsignedMultiplyHigh(a, b);
+        return wymix(low ^ SECRET_0 ^ length, high ^ SECRET_1);
+    }
+
+    private static long wymix(long a, long b) {
+        return (a * b) ^ unsignedMultiplyHigh(a, b);
+    }
+
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        return (long) LONG.get(bytes, offset);
+    }
+
+    /**
+     * Little-endian reads of unsigned values from a byte sequence, so that arrays and direct buffers share one
+     * implementation of the hash.
+     */
+    private abstract static class Reader {
+
+        abstract long readLong(int offset);
+
+        abstract long readInt(int offset);
+
+        abstract long readByte(int offset);
+    }
+
+    private static class ArrayReader extends Reader {
+
+        private final byte[] bytes;
+
+        private ArrayReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        long readLong(int offset) {
+            return (long) LONG.get(bytes, offset);
+        }
+
+        @Override
+        long readInt(int offset) {
+            return (int) INT.get(bytes, offset) & 0xFFFFFFFFL;
+        }
+
+        @Override
+        long readByte(int offset) {
+            return bytes[offset] & 0xFFL;
+        }
+    }
+
+    // the buffer must be little-endian
+    private static class BufferReader extends Reader {
+
+        private final ByteBuffer bytes;
+
+        private BufferReader(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        long readLong(int offset) {
+            return bytes.getLong(offset);
+        }
+
+        @Override
+        long readInt(int offset) {
+            return bytes.getInt(offset) & 0xFFFFFFFFL;
+        }
+
+        @Override
+        long readByte(int offset) {
+            return bytes.get(offset) & 0xFFL;
+        }
+    }
+
+    /**
+     * Incremental hashing of a byte sequence fed in pieces, which produces the same hash as {@link #hash(byte[], long)}
+     * of the whole sequence. Primitives are fed as their little-endian bytes.
+     */
+    public static class Streaming {
+
+        private static final int BLOCK = 48;
+        private static final int TAIL = 16;
+
+        private final long initialSeed;
+        // the last TAIL bytes of the previous block, followed by up to one block of pending input
+        private final byte[] buffer = new byte[TAIL + BLOCK];
+        // holds a primitive value while it is fed, so that feeding primitives allocates nothing
+        private final byte[] scratch = new byte[Long.BYTES];
+        private int pending;
+        private long length;
+        private long seed;
+        private long see1;
+        private long see2;
+
+        private Streaming(long seed) {
+            this.initialSeed = seed;
+            reset();
+        }
+
+        public Streaming reset() {
+            seed = see1 = see2 = initialSeed ^ wymix(initialSeed ^ SECRET_0, SECRET_1);
+            pending = 0;
+            length = 0;
+            return this;
+        }
+
+        public Streaming update(byte[] bytes) {
+            return update(bytes, 0, bytes.length);
+        }
+
+        public Streaming update(byte[] bytes, int offset, int count) {
+            Objects.checkFromIndexSize(offset, count, bytes.length);
+            length += count;
+            while (count > 0) {
+                if (pending == BLOCK) {
+                    block(buffer, TAIL);
+                    System.arraycopy(buffer, BLOCK, buffer, 0, TAIL);
+                    pending = 0;
+                }
+                if (pending == 0 && count > BLOCK) {
+                    // consume whole blocks straight from the input, keeping at least one byte back
+                    do {
+                        block(bytes, offset);
+                        offset += BLOCK;
+                        count -= BLOCK;
+                    } while (count > BLOCK);
+                    System.arraycopy(bytes, offset - TAIL, buffer, 0, TAIL);
+                }
+                int copied = Math.min(BLOCK - pending, count);
+                System.arraycopy(bytes, offset, buffer, TAIL + pending, copied);
+                pending += copied;
+                offset += copied;
+                count -= copied;
+            }
+            return this;
+        }
+
+        public Streaming update(ByteBuffer bytes) {
+            ByteBuffer source = bytes.duplicate();
+            byte[] chunk = new byte[Math.min(source.remaining(), 1 << 12)];
+            while (source.hasRemaining()) {
+                int count = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, count);
+                update(chunk, 0, count);
+            }
+            return this;
+        }
+
+        public Streaming putByte(byte value) {
+            scratch[0] = value;
+            return update(scratch, 0, 1);
+        }
+
+        public Streaming putInt(int value) {
+            INT.set(scratch, 0, value);
+            return update(scratch, 0, Integer.BYTES);
+        }
+
+        public Streaming putLong(long value) {
+            LONG.set(scratch, 0, value);
+            return update(scratch, 0, Long.BYTES);
+        }
+
+        public Streaming putDouble(double value) {
+            return putLong(java.lang.Double.doubleToLongBits(value));
+        }
+
+        /**
+         * @return the hash of everything fed so far; further input may still be fed afterwards
+         */
+        public long digest() {
+            if (length <= TAIL) return hash(buffer, TAIL, (int) length, initialSeed);
+            long seed = this.seed;
+            if (length > BLOCK) seed ^= see1 ^ see2;
+            int p = TAIL, i = pending;
+            while (i > 16) {
+                seed = wymix(readLong(buffer, p) ^ SECRET_1, readLong(buffer, p + 8) ^ seed);
+                p += 16;
+                i -= 16;
+            }
+            return finish(readLong(buffer, p + i - 16), readLong(buffer, p + i - 8), seed, length);
+        }
+
+        private void block(byte[] bytes, int p) {
+            seed = wymix(readLong(bytes, p) ^ SECRET_1, readLong(bytes, p + 8) ^ seed);
+            see1 = wymix(readLong(bytes, p + 16) ^ SECRET_2, readLong(bytes, p + 24) ^ see1);
+            see2 = wymix(readLong(bytes, p + 32) ^ SECRET_3, readLong(bytes, p + 40) ^ see2);
+        }
+    }
+}
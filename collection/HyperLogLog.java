@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.collection;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+
+/**
+ * A HyperLogLog sketch, estimating the number of distinct object keys, hashed by {@link Object#hashCode()}, or
+ * primitive long keys that were added to it. A sketch of precision p holds 2^p registers, and its estimates have a
+ * relative standard error of about 1.04 / sqrt(2^p). Estimates use Ertl's improved estimator, which needs no
+ * empirical bias correction over the whole range of cardinalities.
+ *
+ * Sketches are not thread-safe, except those created by {@link #concurrent(int)}, which update registers atomically.
+ */
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+    private static final int REGISTER_BITS = 6;
+
+    final byte[] registers;
+    private final int precision;
+
+    HyperLogLog(byte[] registers, int precision) {
+        this.registers = registers;
+        this.precision = precision;
+    }
+
+    public static HyperLogLog create(int precision) {
+        return new HyperLogLog(new byte[registers(precision)], precision);
+    }
+
+    public static HyperLogLog concurrent(int precision) {
+        return new Concurrent(new byte[registers(precision)], precision);
+    }
+
+    private static int registers(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be within [" + MIN_PRECISION + ", " +
+                                                       MAX_PRECISION + "]: " + precision);
+        }
+        return 1 << precision;
+    }
+
+    public int precision() {
+        return precision;
+    }
+
+    public void add(Object key) {
+        addHash(Hashing.hash(key));
+    }
+
+    public void add(long key) {
+        addHash(Hashing.hash(key));
+    }
+
+    public long cardinality() {
+        int m = registers.length;
+        int q = Long.SIZE - precision;
+        int[] histogram = new int[q + 2];
+        for (int i = 0; i < m; i++) histogram[register(i)]++;
+        double z = m * tau(1 - (double) histogram[q + 1] / m);
+        for (int k = q; k >= 1; k--) z = 0.5 * (z + histogram[k]);
+        z += m * sigma((double) histogram[0] / m);
+        return Math.round(m / (2 * Math.log(2)) * m / z);
+    }
+
+    /**
+     * Add all keys of another sketch of the same precision into this one.
+     */
+    public void merge(HyperLogLog other) {
+        checkCompatible(other);
+        for (int i = 0; i < registers.length; i++) maxRegister(i, other.register(i));
+    }
+
+    /**
+     * @return a new sketch of the keys added to either sketch
+     */
+    public HyperLogLog union(HyperLogLog other) {
+        checkCompatible(other);
+        HyperLogLog union = create(precision);
+        union.merge(this);
+        union.merge(other);
+        return union;
+    }
+
+    /**
+     * Estimate the number of keys added to both sketches by inclusion-exclusion. The absolute error follows that of
+     * the union, so the estimate is only useful when the intersection is not much smaller than the union.
+     */
+    public long intersectionCardinality(HyperLogLog other) {
+        long first = cardinality(), second = other.cardinality();
+        long intersection = first + second - union(other).cardinality();
+        return Math.max(0, Math.min(intersection, Math.min(first, second)));
+    }
+
+    /**
+     * Serialize the sketch with its registers packed into 6 bits each.
+     */
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + (registers.length * REGISTER_BITS + Byte.SIZE - 1) / Byte.SIZE);
+        buffer.put((byte) precision);
+        int pending = 0, pendingBits = 0;
+        for (int i = 0; i < registers.length; i++) {
+            pending = (pending << REGISTER_BITS) | register(i);
+            pendingBits += REGISTER_BITS;
+            while (pendingBits >= Byte.SIZE) {
+                pendingBits -= Byte.SIZE;
+                buffer.put((byte) (pending >>> pendingBits));
+            }
+        }
+        if (pendingBits > 0) buffer.put((byte) (pending << (Byte.SIZE - pendingBits)));
+        return buffer.array();
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        return fromBytes(bytes, false);
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes, boolean concurrent) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int precision = bytes.length > 0 ? buffer.get() : 0;
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION ||
+                buffer.remaining() != ((1 << precision) * REGISTER_BITS + Byte.SIZE - 1) / Byte.SIZE) {
+            throw new IllegalArgumentException("Bytes do not hold a serialized HyperLogLog");
+        }
+        byte[] registers = new byte[registers(precision)];
+        int pending = 0, pendingBits = 0;
+        for (int i = 0; i < registers.length; i++) {
+            while (pendingBits < REGISTER_BITS) {
+                pending = (pending << Byte.SIZE) | (buffer.get() & 0xFF);
+                pendingBits += Byte.SIZE;
+            }
+            pendingBits -= REGISTER_BITS;
+            registers[i] = (byte) ((pending >>> pendingBits) & ((1 << REGISTER_BITS) - 1));
+            // no rank exceeds 65 - precision, and a larger one would overflow the histogram of cardinality()
+            if (registers[i] > Long.SIZE + 1 - precision) {
+                throw new IllegalArgumentException("Bytes do not hold a serialized HyperLogLog");
+            }
+        }
+        return concurrent ? new Concurrent(registers, precision) : new HyperLogLog(registers, precision);
+    }
+
+    private void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        // the sentinel bit caps the rank at 65 - precision, once every bit below the index is zero
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (register(index) < rank) maxRegister(index, rank);
+    }
+
+    private void checkCompatible(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot combine HyperLogLog sketches of different precisions");
+        }
+    }
+
+    private static double sigma(double x) {
+        if (x == 1) return Double.POSITIVE_INFINITY;
+        double y = 1, z = x, previous;
+        do {
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        } while (z != previous);
+        return z;
+    }
+
+    private static double tau(double x) {
+        if (x == 0 || x == 1) return 0;
+        double y = 1, z = 1 - x, previous;
+        do {
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5;
+            z -= (1 - x) * (1 - x) * y;
+        } while (z != previous);
+        return z / 3;
+    }
+
+    int register(int index) {
+        return registers[index];
+    }
+
+    void maxRegister(int index, int value) {
+        if (registers[index] < value) registers[index] = (byte) value;
+    }
+
+    private static class Concurrent extends HyperLogLog {
+
+        private static final VarHandle REGISTERS = MethodHandles.arrayElementVarHandle(byte[].class);
+
+        private Concurrent(byte[] registers, int precision) {
+            super(registers, precision);
+        }
+
+        @Override
+        int register(int index) {
+            return (byte) REGISTERS.getAcquire(registers, index);
+        }
+
+        @Override
+        void maxRegister(int index, int value) {
+            byte current;
+            do {
+                current = (byte) REGISTERS.getAcquire(registers, index);
+                if (current >= value) return;
+            } while (!REGISTERS.compareAndSet(registers, index, current, (byte) value));
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+import static com.vaticle.typedb.common.collection.RoaringBitmap.ARRAY;
+import static com.vaticle.typedb.common.collection.RoaringBitmap.BITMAP;
+import static com.vaticle.typedb.common.collection.RoaringBitmap.BITMAP_WORDS;
+import static com.vaticle.typedb.common.collection.RoaringBitmap.ENTRY_SIZE;
+import static com.vaticle.typedb.common.collection.RoaringBitmap.HEADER_SIZE;
+import static com.vaticle.typedb.common.collection.RoaringBitmap.MAGIC;
+import static com.vaticle.typedb.common.collection.RoaringBitmap.RUN;
+
+/**
+ * A read-only {@link RoaringBitmap} answered directly from its serialized form, such as a memory-mapped file, without
+ * deserializing its containers. The static set operations read both operands in place and return a new
+ * {@link RoaringBitmap}.
+ */
+public class ImmutableRoaringBitmap extends AbstractSet<Integer> {
+
+    private final ByteBuffer buffer;
+    private final int count;
+
+    private ImmutableRoaringBitmap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) throw new IllegalArgumentException("Buffer does not hold a serialized RoaringBitmap");
+        this.count = buffer.getInt(4);
+    }
+
+    /**
+     * Read the bitmap starting at the buffer's position. The buffer must not be modified while the bitmap is in use.
+     */
+    public static ImmutableRoaringBitmap map(ByteBuffer buffer) {
+        return new ImmutableRoaringBitmap(buffer.slice().order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    public static ImmutableRoaringBitmap map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return map(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public boolean contains(int value) {
+        int index = indexOf((char) (value >>> 16));
+        return index >= 0 && nextValue(index, (char) value) == (char) value;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < count; i++) cardinality += buffer.getInt(entry(i) + 4);
+        return cardinality;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, cardinality());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Pass each value to the consumer in unsigned order, without boxing.
+     */
+    public void forEachInt(IntConsumer consumer) {
+        for (int i = 0; i < count; i++) new MappedContainer(i).forEach(key(i) << 16, consumer);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+
+            private int index = 0;
+            private int next = count == 0 ? -1 : nextValue(0, 0);
+
+            @Override
+            public boolean hasNext() {
+                return index < count;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int value = (key(index) << 16) | next;
+                next = next == 0xFFFF ? -1 : nextValue(index, next + 1);
+                if (next < 0 && ++index < count) next = nextValue(index, 0);
+                return value;
+            }
+        };
+    }
+
+    public static RoaringBitmap and(ImmutableRoaringBitmap first, ImmutableRoaringBitmap second) {
+        return RoaringBitmap.and(first.view(), second.view());
+    }
+
+    public static long andCardinality(ImmutableRoaringBitmap first, ImmutableRoaringBitmap second) {
+        return RoaringBitmap.andCardinality(first.view(), second.view());
+    }
+
+    public static RoaringBitmap or(ImmutableRoaringBitmap first, ImmutableRoaringBitmap second) {
+        return RoaringBitmap.or(first.view(), second.view());
+    }
+
+    /**
+     * @return the values of {@code first} which are not in {@code second}
+     */
+    public static RoaringBitmap andNot(ImmutableRoaringBitmap first, ImmutableRoaringBitmap second) {
+        return RoaringBitmap.andNot(first.view(), second.view());
+    }
+
+    /**
+     * @return a mutable copy of this bitmap
+     */
+    public RoaringBitmap toRoaringBitmap() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = 0; i < count; i++) bitmap.insertDeserialized(key(i), new MappedContainer(i).copy());
+        return bitmap;
+    }
+
+    private RoaringBitmap.View view() {
+        return new RoaringBitmap.View() {
+            @Override
+            int count() {
+                return count;
+            }
+
+            @Override
+            char key(int index) {
+                return ImmutableRoaringBitmap.this.key(index);
+            }
+
+            @Override
+            RoaringBitmap.Container container(int index) {
+                return new MappedContainer(index);
+            }
+        };
+    }
+
+    private int entry(int index) {
+        return HEADER_SIZE + index * ENTRY_SIZE;
+    }
+
+    private char key(int index) {
+        return buffer.getChar(entry(index));
+    }
+
+    private int indexOf(char key) {
+        int low = 0, high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midKey = key(mid);
+            if (midKey < key) low = mid + 1;
+            else if (midKey > key) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the smallest low value at least {@code from} in the container at the index, or -1 if there is none
+     */
+    private int nextValue(int index, int from) {
+        int cardinality = buffer.getInt(entry(index) + 4);
+        int offset = buffer.getInt(entry(index) + 8);
+        switch (buffer.get(entry(index) + 2)) {
+            case ARRAY: {
+                int low = 0, high = cardinality;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (buffer.getChar(offset + mid * Character.BYTES) < from) low = mid + 1;
+                    else high = mid;
+                }
+                return low < cardinality ? buffer.getChar(offset + low * Character.BYTES) : -1;
+            }
+            case BITMAP: {
+                int word = from >>> 6;
+                long bits = buffer.getLong(offset + word * Long.BYTES) & (-1L << from);
+                while (bits == 0) {
+                    if (++word == BITMAP_WORDS) return -1;
+                    bits = buffer.getLong(offset + word * Long.BYTES);
+                }
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            default: {
+                int runs = buffer.getChar(offset);
+                int low = 0, high = runs - 1;
+                while (low <= high) {
+                    int mid = (low + high) >>> 1;
+                    if (buffer.getChar(offset + (1 + mid * 2) * Character.BYTES) <= from) low = mid + 1;
+                    else high = mid - 1;
+                }
+                if (high >= 0) {
+                    int start = buffer.getChar(offset + (1 + high * 2) * Character.BYTES);
+                    int length = buffer.getChar(offset + (2 + high * 2) * Character.BYTES);
+                    if (from <= start + length) return from;
+                }
+                return high + 1 < runs ? buffer.getChar(offset + (1 + (high + 1) * 2) * Character.BYTES) : -1;
+            }
+        }
+    }
+
+    /**
+     * A read-only container answered from the buffer, which set operations combine with in-memory containers.
+     */
+    private class MappedContainer extends RoaringBitmap.Container {
+
+        private final int index;
+        private final byte type;
+        private final int cardinality;
+        private final int offset;
+
+        private MappedContainer(int index) {
+            this.index = index;
+            this.type = buffer.get(entry(index) + 2);
+            this.cardinality = buffer.getInt(entry(index) + 4);
+            this.offset = buffer.getInt(entry(index) + 8);
+        }
+
+        @Override
+        byte type() {
+            return type;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return ImmutableRoaringBitmap.this.nextValue(index, value) == value;
+        }
+
+        @Override
+        RoaringBitmap.Container add(char value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        RoaringBitmap.Container remove(char value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        int nextValue(int from) {
+            return from > 0xFFFF ? -1 : ImmutableRoaringBitmap.this.nextValue(index, from);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            switch (type) {
+                case ARRAY:
+                    for (int v = 0; v < cardinality; v++) consumer.accept(high | value(v));
+                    break;
+                case BITMAP:
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        for (long word = word(w); word != 0; word &= word - 1) {
+                            consumer.accept(high | ((w << 6) + Long.numberOfTrailingZeros(word)));
+                        }
+                    }
+                    break;
+                default:
+                    for (int r = 0; r < runCount(); r++) {
+                        for (int value = runStart(r), end = value + runLength(r); value <= end; value++) consumer.accept(high | value);
+                    }
+            }
+        }
+
+        /**
+         * @return an in-memory copy of this container
+         */
+        @Override
+        RoaringBitmap.Container copy() {
+            switch (type) {
+                case ARRAY:
+                    char[] values = new char[cardinality];
+                    for (int v = 0; v < cardinality; v++) values[v] = value(v);
+                    return new RoaringBitmap.ArrayContainer(values, cardinality);
+                case BITMAP:
+                    long[] words = new long[BITMAP_WORDS];
+                    for (int w = 0; w < BITMAP_WORDS; w++) words[w] = word(w);
+                    return new RoaringBitmap.BitmapContainer(words, cardinality);
+                default:
+                    char[] runs = new char[runCount() * 2];
+                    for (int r = 0; r < runs.length; r++) runs[r] = buffer.getChar(offset + (r + 1) * Character.BYTES);
+                    return new RoaringBitmap.RunContainer(runs);
+            }
+        }
+
+        @Override
+        int serializedSize() {
+            switch (type) {
+                case ARRAY:
+                    return RoaringBitmap.ArrayContainer.serializedSize(cardinality);
+                case BITMAP:
+                    return RoaringBitmap.BitmapContainer.SERIALIZED_SIZE;
+                default:
+                    return RoaringBitmap.RunContainer.serializedSize(runCount());
+            }
+        }
+
+        @Override
+        void serialize(ByteBuffer out) {
+            for (int i = 0; i < serializedSize(); i++) out.put(buffer.get(offset + i));
+        }
+
+        @Override
+        void orInto(long[] words) {
+            switch (type) {
+                case ARRAY:
+                    for (int v = 0; v < cardinality; v++) words[value(v) >>> 6] |= 1L << value(v);
+                    break;
+                case BITMAP:
+                    for (int w = 0; w < BITMAP_WORDS; w++) words[w] |= word(w);
+                    break;
+                default:
+                    for (int r = 0; r < runCount(); r++) {
+                        RoaringBitmap.RunContainer.setRange(words, runStart(r), runStart(r) + runLength(r) + 1, true);
+                    }
+            }
+        }
+
+        @Override
+        void clearFrom(long[] words) {
+            switch (type) {
+                case ARRAY:
+                    for (int v = 0; v < cardinality; v++) words[value(v) >>> 6] &= ~(1L << value(v));
+                    break;
+                case BITMAP:
+                    for (int w = 0; w < BITMAP_WORDS; w++) words[w] &= ~word(w);
+                    break;
+                default:
+                    for (int r = 0; r < runCount(); r++) {
+                        RoaringBitmap.RunContainer.setRange(words, runStart(r), runStart(r) + runLength(r) + 1, false);
+                    }
+            }
+        }
+
+        @Override
+        int countRuns() {
+            return type == RUN ? runCount() : super.countRuns();
+        }
+
+        private char value(int v) {
+            return buffer.getChar(offset + v * Character.BYTES);
+        }
+
+        private long word(int w) {
+            return buffer.getLong(offset + w * Long.BYTES);
+        }
+
+        private int runCount() {
+            return buffer.getChar(offset);
+        }
+
+        private int runStart(int run) {
+            return buffer.getChar(offset + (1 + run * 2) * Character.BYTES);
+        }
+
+        private int runLength(int run) {
+            return buffer.getChar(offset + (2 + run * 2) * Character.BYTES);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive int keys to primitive int values, which stores neither boxed keys nor entry nodes.
+ *
+ * The table uses open addressing with linear probing and backward-shift deletion, so it never holds tombstones.
+ * {@link #clear()} keeps the allocated table, so the same instance can be reused as scratch space.
+ */
+public class Int2IntMap {
+
+    private static final float DEFAULT_LOAD_FACTOR = 0.6f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    // the key 0 marks empty slots, so an entry for it is held apart from the table
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public Int2IntMap() {
+        this(16, DEFAULT_LOAD_FACTOR);
+    }
+
+    public Int2IntMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    public Int2IntMap(int expectedSize, float loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1) throw new IllegalArgumentException("Load factor must be in (0, 1): " + loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(capacity(expectedSize, loadFactor));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == 0) return hasZeroKey;
+        return keys[slot(key)] == key;
+    }
+
+    /**
+     * @return the value for the key, or 0 if it is absent
+     */
+    public int get(int key) {
+        return getOrDefault(key, 0);
+    }
+
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == 0) return hasZeroKey ? zeroValue : defaultValue;
+        int slot = slot(key);
+        return keys[slot] == key ? values[slot] : defaultValue;
+    }
+
+    /**
+     * @return true if the key was not already present
+     */
+    public boolean put(int key, int value) {
+        if (key == 0) {
+            zeroValue = value;
+            if (hasZeroKey) return false;
+            hasZeroKey = true;
+            size++;
+            return true;
+        }
+        int slot = slot(key);
+        if (keys[slot] == key) {
+            values[slot] = value;
+            return false;
+        }
+        if (size >= resizeAt) slot = grow(key);
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Add the delta to the value for the key, treating an absent key as 0.
+     *
+     * @return the new value
+     */
+    public int addTo(int key, int delta) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            return zeroValue += delta;
+        }
+        int slot = slot(key);
+        if (keys[slot] == key) return values[slot] += delta;
+        if (size >= resizeAt) slot = grow(key);
+        keys[slot] = key;
+        values[slot] = delta;
+        size++;
+        return delta;
+    }
+
+    /**
+     * @return true if the key was present
+     */
+    public boolean remove(int key) {
+        if (key == 0) {
+            if (!hasZeroKey) return false;
+            hasZeroKey = false;
+            zeroValue = 0;
+            size--;
+            return true;
+        }
+        int slot = slot(key);
+        if (keys[slot] != key) return false;
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        zeroValue = 0;
+        size = 0;
+    }
+
+    /**
+     * Iterate the entries without boxing. The map must not be modified during iteration.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private int slot(int key) {
+        int slot = (int) Hashing.mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private int nextSlot(int from) {
+        int slot = Math.max(from, 0);
+        while (slot < keys.length && keys[slot] == 0) slot++;
+        return slot;
+    }
+
+    // close the gap left at the slot by moving back any later entry of the same probe sequence
+    private void shiftBack(int gap) {
+        for (int slot = (gap + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            int ideal = (int) Hashing.mix(keys[slot]) & mask;
+            if (((slot - ideal) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    /**
+     * Double the table, before inserting a key that would exceed its load factor.
+     *
+     * @return the key's slot in the new table
+     */
+    private int grow(int key) {
+        if (keys.length == MAXIMUM_CAPACITY) throw new IllegalStateException("Map is full at " + size + " entries");
+        rehash(keys.length * 2);
+        return slot(key);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.min(capacity - 1, (int) (capacity * loadFactor));
+    }
+
+    private static int capacity(int expectedSize, float loadFactor) {
+        long capacity = Long.highestOneBit(Math.max(2, (long) Math.ceil(expectedSize / loadFactor)) * 2 - 1);
+        if (capacity > MAXIMUM_CAPACITY) throw new IllegalArgumentException("Too many entries: " + expectedSize);
+        return (int) capacity;
+    }
+
+    public class Cursor {
+
+        private int slot = -2;
+
+        private Cursor() {
+        }
+
+        /**
+         * @return false once there are no more entries
+         */
+        public boolean advance() {
+            if (slot == -2 && hasZeroKey) slot = -1;
+            else slot = nextSlot(slot + 1);
+            return slot < keys.length;
+        }
+
+        public int key() {
+            return slot < 0 ? 0 : keys[slot];
+        }
+
+        public int value() {
+            return slot < 0 ? zeroValue : values[slot];
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A concurrent pool of canonical instances, keyed on equality. The pool only holds its instances weakly, so a
+ * canonical instance that is no longer used elsewhere can be reclaimed, and its entry is purged on a later call.
+ *
+ * Each entry keeps the hash code of its instance, so lookups of {@link Pair} and {@link Triple}, which precompute
+ * their hash, never recompute one, and entries are only compared by equals when their hashes match.
+ */
+public class Interner<T> {
+
+    private final ConcurrentHashMap<Object, WeakKey<T>> pool = new ConcurrentHashMap<>();
+    private final ReferenceQueue<T> cleared = new ReferenceQueue<>();
+
+    public T intern(T value) {
+        purge();
+        WeakKey<T> existing = pool.get(new Lookup(value));
+        if (existing != null) {
+            T canonical = existing.get();
+            if (canonical != null) return canonical;
+        }
+        WeakKey<T> key = new WeakKey<>(value, cleared);
+        while (true) {
+            WeakKey<T> previous = pool.putIfAbsent(key, key);
+            if (previous == null) return value;
+            T canonical = previous.get();
+            if (canonical != null) return canonical;
+            // the previous instance was reclaimed after matching, so it no longer matches on retry
+        }
+    }
+
+    public int size() {
+        purge();
+        return pool.size();
+    }
+
+    private void purge() {
+        Reference<? extends T> reference;
+        while ((reference = cleared.poll()) != null) pool.remove(reference);
+    }
+
+    private static class WeakKey<T> extends WeakReference<T> {
+
+        private final int hash;
+
+        private WeakKey(T value, ReferenceQueue<T> queue) {
+            super(value, queue);
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof WeakKey)) return false;
+            WeakKey<?> that = (WeakKey<?>) o;
+            if (hash != that.hash) return false;
+            T value = get();
+            return value != null && value.equals(that.get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static class Lookup {
+
+        private final Object value;
+        private final int hash;
+
+        private Lookup(Object value) {
+            this.value = value;
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof WeakKey)) return false;
+            WeakKey<?> that = (WeakKey<?>) o;
+            return hash == that.hash && value.equals(that.get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
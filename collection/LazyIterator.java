@@ -0,0 +1,476 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A lazy iterator whose stages pull elements directly from one another, without the pipeline setup and per-element
+ * bookkeeping of java.util.stream, so that short pipelines run hot. Apart from user functions, stages allocate
+ * nothing per element.
+ *
+ * Closing a stage closes its sources and runs their close hooks. This happens automatically when an iterator is
+ * exhausted or reaches its limit, and should be done explicitly when a consumer stops early.
+ */
+public abstract class LazyIterator<T> implements Iterator<T>, AutoCloseable {
+
+    private T next;
+    private boolean ready = false;
+    private boolean done = false;
+    private List<Runnable> onClose = null;
+
+    /**
+     * Advance to the next element, handing it to {@link #found(Object)}
+     *
+     * @return false if there are no more elements
+     */
+    abstract boolean advance();
+
+    abstract void closeSources();
+
+    final boolean found(T element) {
+        next = element;
+        return true;
+    }
+
+    @Override
+    public final boolean hasNext() {
+        if (ready) return true;
+        if (done) return false;
+        if (advance()) ready = true;
+        else close();
+        return ready;
+    }
+
+    @Override
+    public final T next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        ready = false;
+        T element = next;
+        next = null;
+        return element;
+    }
+
+    public LazyIterator<T> onClose(Runnable hook) {
+        if (onClose == null) onClose = new ArrayList<>(1);
+        onClose.add(hook);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (done) return;
+        done = true;
+        ready = false;
+        next = null;
+        closeSources();
+        if (onClose != null) onClose.forEach(Runnable::run);
+    }
+
+    public static <T> LazyIterator<T> iterate(Iterator<? extends T> iterator) {
+        return new Source<>(iterator);
+    }
+
+    public static <T> LazyIterator<T> iterate(Iterable<? extends T> iterable) {
+        return new Source<>(iterable.iterator());
+    }
+
+    @SafeVarargs
+    public static <T> LazyIterator<T> iterate(T... elements) {
+        List<T> list = new ArrayList<>(elements.length);
+        for (T element : elements) list.add(element);
+        return new Source<>(list.iterator());
+    }
+
+    public static <T> LazyIterator<T> empty() {
+        return new Source<>(java.util.Collections.emptyIterator());
+    }
+
+    /**
+     * Iterate the elements of a sorted set from a given element onwards
+     */
+    public static <T> LazyIterator<T> iterate(NavigableSet<T> set, T from, boolean inclusive) {
+        return new Source<>(set.tailSet(from, inclusive).iterator());
+    }
+
+    /**
+     * Merge iterators which are each sorted by the comparator into a single sorted iterator
+     */
+    @SafeVarargs
+    public static <T> LazyIterator<T> mergeSorted(Comparator<? super T> comparator, Iterator<? extends T>... iterators) {
+        List<Iterator<? extends T>> list = new ArrayList<>(iterators.length);
+        for (Iterator<? extends T> iterator : iterators) list.add(iterator);
+        return mergeSorted(comparator, list);
+    }
+
+    public static <T> LazyIterator<T> mergeSorted(Comparator<? super T> comparator, List<? extends Iterator<? extends T>> iterators) {
+        return new MergeSorted<>(comparator, iterators);
+    }
+
+    public <U> LazyIterator<U> map(Function<? super T, ? extends U> function) {
+        return new Map<>(this, function);
+    }
+
+    public LazyIterator<T> filter(Predicate<? super T> predicate) {
+        return new Filter<>(this, predicate);
+    }
+
+    public <U> LazyIterator<U> flatMap(Function<? super T, ? extends Iterator<? extends U>> function) {
+        return new FlatMap<>(this, function);
+    }
+
+    public LazyIterator<T> limit(long limit) {
+        return new Limit<>(this, limit);
+    }
+
+    public LazyIterator<T> distinct() {
+        return new Distinct<>(this);
+    }
+
+    public <U, R> LazyIterator<R> zip(Iterator<? extends U> other, BiFunction<? super T, ? super U, ? extends R> function) {
+        return new Zip<>(this, other, function);
+    }
+
+    public LongIterator mapToLong(ToLongFunction<? super T> function) {
+        return new LongIterator.FromObjects<>(this, function);
+    }
+
+    public Optional<T> first() {
+        try {
+            return hasNext() ? Optional.ofNullable(next()) : Optional.empty();
+        } finally {
+            close();
+        }
+    }
+
+    public long count() {
+        long count = 0;
+        while (hasNext()) {
+            next();
+            count++;
+        }
+        return count;
+    }
+
+    public boolean anyMatch(Predicate<? super T> predicate) {
+        while (hasNext()) {
+            if (predicate.test(next())) {
+                close();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<T> toList() {
+        List<T> list = new ArrayList<>();
+        forEachRemaining(list::add);
+        return list;
+    }
+
+    public Set<T> toSet() {
+        Set<T> set = new HashSet<>();
+        forEachRemaining(set::add);
+        return set;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        while (hasNext()) action.accept(next());
+    }
+
+    private static class Source<T> extends LazyIterator<T> {
+
+        private final Iterator<? extends T> iterator;
+
+        private Source(Iterator<? extends T> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        boolean advance() {
+            return iterator.hasNext() && found(iterator.next());
+        }
+
+        @Override
+        void closeSources() {
+            if (iterator instanceof AutoCloseable) closeUnchecked((AutoCloseable) iterator);
+        }
+    }
+
+    private static class Map<T, U> extends LazyIterator<U> {
+
+        private final LazyIterator<T> source;
+        private final Function<? super T, ? extends U> function;
+
+        private Map(LazyIterator<T> source, Function<? super T, ? extends U> function) {
+            this.source = source;
+            this.function = function;
+        }
+
+        @Override
+        boolean advance() {
+            return source.hasNext() && found(function.apply(source.next()));
+        }
+
+        @Override
+        void closeSources() {
+            source.close();
+        }
+    }
+
+    private static class Filter<T> extends LazyIterator<T> {
+
+        private final LazyIterator<T> source;
+        private final Predicate<? super T> predicate;
+
+        private Filter(LazyIterator<T> source, Predicate<? super T> predicate) {
+            this.source = source;
+            this.predicate = predicate;
+        }
+
+        @Override
+        boolean advance() {
+            while (source.hasNext()) {
+                T element = source.next();
+                if (predicate.test(element)) return found(element);
+            }
+            return false;
+        }
+
+        @Override
+        void closeSources() {
+            source.close();
+        }
+    }
+
+    private static class FlatMap<T, U> extends LazyIterator<U> {
+
+        private final LazyIterator<T> source;
+        private final Function<? super T, ? extends Iterator<? extends U>> function;
+        private Iterator<? extends U> current = null;
+
+        private FlatMap(LazyIterator<T> source, Function<? super T, ? extends Iterator<? extends U>> function) {
+            this.source = source;
+            this.function = function;
+        }
+
+        @Override
+        boolean advance() {
+            while (current == null || !current.hasNext()) {
+                if (current instanceof AutoCloseable) closeUnchecked((AutoCloseable) current);
+                if (!source.hasNext()) {
+                    current = null;
+                    return false;
+                }
+                current = function.apply(source.next());
+            }
+            return found(current.next());
+        }
+
+        @Override
+        void closeSources() {
+            if (current instanceof AutoCloseable) closeUnchecked((AutoCloseable) current);
+            source.close();
+        }
+    }
+
+    private static class Limit<T> extends LazyIterator<T> {
+
+        private final LazyIterator<T> source;
+        private long remaining;
+
+        private Limit(LazyIterator<T> source, long limit) {
+            this.source = source;
+            this.remaining = limit;
+        }
+
+        @Override
+        boolean advance() {
+            if (remaining <= 0 || !source.hasNext()) return false;
+            remaining--;
+            return found(source.next());
+        }
+
+        @Override
+        void closeSources() {
+            source.close();
+        }
+    }
+
+    private static class Distinct<T> extends LazyIterator<T> {
+
+        private final LazyIterator<T> source;
+        private final Set<T> seen = new HashSet<>();
+
+        private Distinct(LazyIterator<T> source) {
+            this.source = source;
+        }
+
+        @Override
+        boolean advance() {
+            while (source.hasNext()) {
+                T element = source.next();
+                if (seen.add(element)) return found(element);
+            }
+            return false;
+        }
+
+        @Override
+        void closeSources() {
+            source.close();
+        }
+    }
+
+    private static class Zip<T, U, R> extends LazyIterator<R> {
+
+        private final LazyIterator<T> source;
+        private final Iterator<? extends U> other;
+        private final BiFunction<? super T, ? super U, ? extends R> function;
+
+        private Zip(LazyIterator<T> source, Iterator<? extends U> other, BiFunction<? super T, ? super U, ? extends R> function) {
+            this.source = source;
+            this.other = other;
+            this.function = function;
+        }
+
+        @Override
+        boolean advance() {
+            return source.hasNext() && other.hasNext() && found(function.apply(source.next(), other.next()));
+        }
+
+        @Override
+        void closeSources() {
+            source.close();
+            if (other instanceof AutoCloseable) closeUnchecked((AutoCloseable) other);
+        }
+    }
+
+    /**
+     * A k-way merge, which keeps the head of each source in a binary heap ordered by the comparator
+     */
+    private static class MergeSorted<T> extends LazyIterator<T> {
+
+        private final Comparator<? super T> comparator;
+        private final List<Iterator<? extends T>> sources;
+        private final Object[] heads;
+        private final int[] heap;
+        private int size = 0;
+        private boolean initialised = false;
+
+        private MergeSorted(Comparator<? super T> comparator, List<? extends Iterator<? extends T>> sources) {
+            this.comparator = comparator;
+            this.sources = new ArrayList<>(sources);
+            this.heads = new Object[sources.size()];
+            this.heap = new int[sources.size()];
+        }
+
+        @Override
+        boolean advance() {
+            if (!initialised) {
+                initialised = true;
+                for (int i = 0; i < sources.size(); i++) {
+                    if (sources.get(i).hasNext()) {
+                        heads[i] = sources.get(i).next();
+                        heap[size] = i;
+                        siftUp(size++);
+                    }
+                }
+            }
+            if (size == 0) return false;
+            int source = heap[0];
+            T element = head(source);
+            if (sources.get(source).hasNext()) {
+                heads[source] = sources.get(source).next();
+            } else {
+                heads[source] = null;
+                heap[0] = heap[--size];
+            }
+            if (size > 0) siftDown(0);
+            return found(element);
+        }
+
+        @Override
+        void closeSources() {
+            for (Iterator<? extends T> source : sources) {
+                if (source instanceof AutoCloseable) closeUnchecked((AutoCloseable) source);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private T head(int source) {
+            return (T) heads[source];
+        }
+
+        private boolean less(int i, int j) {
+            return comparator.compare(head(heap[i]), head(heap[j])) < 0;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0 && less(i, (i - 1) / 2)) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && less(left, smallest)) smallest = left;
+                if (right < size && less(right, smallest)) smallest = right;
+                if (smallest == i) return;
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int tmp = heap[i];
+            heap[i] = heap[j];
+            heap[j] = tmp;
+        }
+    }
+
+    /**
+     * Close a source, rethrowing any checked exception as an {@link IllegalStateException}
+     */
+    static void closeUnchecked(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
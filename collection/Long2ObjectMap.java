@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive long keys to object values, which stores neither boxed keys nor entry nodes.
+ *
+ * The table uses open addressing with linear probing and backward-shift deletion, so it never holds tombstones.
+ * {@link #clear()} keeps the allocated table, so the same instance can be reused as scratch space.
+ */
+public class Long2ObjectMap<V> {
+
+    private static final float DEFAULT_LOAD_FACTOR = 0.6f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    // the key 0 marks empty slots, so an entry for it is held apart from the table
+    private boolean hasZeroKey;
+    private V zeroValue;
+
+    public Long2ObjectMap() {
+        this(16, DEFAULT_LOAD_FACTOR);
+    }
+
+    public Long2ObjectMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    public Long2ObjectMap(int expectedSize, float loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1) throw new IllegalArgumentException("Load factor must be in (0, 1): " + loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(capacity(expectedSize, loadFactor));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) return hasZeroKey;
+        return keys[slot(key)] == key;
+    }
+
+    /**
+     * @return the value for the key, or null if it is absent
+     */
+    public V get(long key) {
+        return getOrDefault(key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V getOrDefault(long key, V defaultValue) {
+        if (key == 0) return hasZeroKey ? zeroValue : defaultValue;
+        int slot = slot(key);
+        return keys[slot] == key ? (V) values[slot] : defaultValue;
+    }
+
+    /**
+     * @return true if the key was not already present
+     */
+    public boolean put(long key, V value) {
+        if (key == 0) {
+            zeroValue = value;
+            if (hasZeroKey) return false;
+            hasZeroKey = true;
+            size++;
+            return true;
+        }
+        int slot = slot(key);
+        if (keys[slot] == key) {
+            values[slot] = value;
+            return false;
+        }
+        if (size >= resizeAt) slot = grow(key);
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return true if the key was present
+     */
+    public boolean remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) return false;
+            hasZeroKey = false;
+            zeroValue = null;
+            size--;
+            return true;
+        }
+        int slot = slot(key);
+        if (keys[slot] != key) return false;
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        hasZeroKey = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    /**
+     * Iterate the entries without boxing. The map must not be modified during iteration.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private int slot(long key) {
+        int slot = (int) Hashing.mix(key) & mask;
+        while (keys[slot] != 0 && keys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private int nextSlot(int from) {
+        int slot = Math.max(from, 0);
+        while (slot < keys.length && keys[slot] == 0) slot++;
+        return slot;
+    }
+
+    // close the gap left at the slot by moving back any later entry of the same probe sequence
+    private void shiftBack(int gap) {
+        for (int slot = (gap + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+            int ideal = (int) Hashing.mix(keys[slot]) & mask;
+            if (((slot - ideal) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+
+    /**
+     * Double the table, before inserting a key that would exceed its load factor.
+     *
+     * @return the key's slot in the new table
+     */
+    private int grow(long key) {
+        if (keys.length == MAXIMUM_CAPACITY) throw new IllegalStateException("Map is full at " + size + " entries");
+        rehash(keys.length * 2);
+        return slot(key);
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.min(capacity - 1, (int) (capacity * loadFactor));
+    }
+
+    private static int capacity(int expectedSize, float loadFactor) {
+        long capacity = Long.highestOneBit(Math.max(2, (long) Math.ceil(expectedSize / loadFactor)) * 2 - 1);
+        if (capacity > MAXIMUM_CAPACITY) throw new IllegalArgumentException("Too many entries: " + expectedSize);
+        return (int) capacity;
+    }
+
+    public class Cursor {
+
+        private int slot = -2;
+
+        private Cursor() {
+        }
+
+        /**
+         * @return false once there are no more entries
+         */
+        public boolean advance() {
+            if (slot == -2 && hasZeroKey) slot = -1;
+            else slot = nextSlot(slot + 1);
+            return slot < keys.length;
+        }
+
+        public long key() {
+            return slot < 0 ? 0 : keys[slot];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V value() {
+            return slot < 0 ? zeroValue : (V) values[slot];
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.function.ToLongFunction;
+
+/**
+ * The primitive long counterpart of {@link LazyIterator}, which never boxes its elements.
+ */
+public abstract class LongIterator implements AutoCloseable {
+
+    private long next;
+    private boolean ready = false;
+    private boolean done = false;
+    private List<Runnable> onClose = null;
+
+    abstract boolean advance();
+
+    abstract void closeSources();
+
+    final boolean found(long element) {
+        next = element;
+        return true;
+    }
+
+    public final boolean hasNext() {
+        if (ready) return true;
+        if (done) return false;
+        if (advance()) ready = true;
+        else close();
+        return ready;
+    }
+
+    public final long next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        ready = false;
+        return next;
+    }
+
+    public LongIterator onClose(Runnable hook) {
+        if (onClose == null) onClose = new ArrayList<>(1);
+        onClose.add(hook);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (done) return;
+        done = true;
+        ready = false;
+        closeSources();
+        if (onClose != null) onClose.forEach(Runnable::run);
+    }
+
+    public static LongIterator iterate(long... elements) {
+        return new LongIterator() {
+
+            private int index = 0;
+
+            @Override
+            boolean advance() {
+                return index < elements.length && found(elements[index++]);
+            }
+
+            @Override
+            void closeSources() {
+            }
+        };
+    }
+
+    public static LongIterator iterate(PrimitiveIterator.OfLong iterator) {
+        return new Source(iterator);
+    }
+
+    /**
+     * @return the longs from {@code from} inclusive to {@code to} exclusive
+     */
+    public static LongIterator range(long from, long to) {
+        return new LongIterator() {
+
+            private long current = from;
+
+            @Override
+            boolean advance() {
+                return current < to && found(current++);
+            }
+
+            @Override
+            void closeSources() {
+            }
+        };
+    }
+
+    public LongIterator map(LongUnaryOperator function) {
+        LongIterator source = this;
+        return new Stage(source) {
+            @Override
+            boolean advance() {
+                return source.hasNext() && found(function.applyAsLong(source.next()));
+            }
+        };
+    }
+
+    public LongIterator filter(LongPredicate predicate) {
+        LongIterator source = this;
+        return new Stage(source) {
+            @Override
+            boolean advance() {
+                while (source.hasNext()) {
+                    long element = source.next();
+                    if (predicate.test(element)) return found(element);
+                }
+                return false;
+            }
+        };
+    }
+
+    public LongIterator limit(long limit) {
+        LongIterator source = this;
+        return new Stage(source) {
+
+            private long remaining = limit;
+
+            @Override
+            boolean advance() {
+                if (remaining <= 0 || !source.hasNext()) return false;
+                remaining--;
+                return found(source.next());
+            }
+        };
+    }
+
+    public <T> LazyIterator<T> mapToObj(LongFunction<? extends T> function) {
+        LongIterator source = this;
+        return new LazyIterator<T>() {
+            @Override
+            boolean advance() {
+                return source.hasNext() && found(function.apply(source.next()));
+            }
+
+            @Override
+            void closeSources() {
+                source.close();
+            }
+        };
+    }
+
+    public long sum() {
+        long sum = 0;
+        while (hasNext()) sum += next();
+        return sum;
+    }
+
+    public long count() {
+        long count = 0;
+        while (hasNext()) {
+            next();
+            count++;
+        }
+        return count;
+    }
+
+    public long[] toArray() {
+        long[] array = new long[16];
+        int size = 0;
+        while (hasNext()) {
+            if (size == array.length) array = Arrays.copyOf(array, size * 2);
+            array[size++] = next();
+        }
+        return Arrays.copyOf(array, size);
+    }
+
+    private abstract static class Stage extends LongIterator {
+
+        private final LongIterator source;
+
+        private Stage(LongIterator source) {
+            this.source = source;
+        }
+
+        @Override
+        void closeSources() {
+            source.close();
+        }
+    }
+
+    private static class Source extends LongIterator {
+
+        private final PrimitiveIterator.OfLong iterator;
+
+        private Source(PrimitiveIterator.OfLong iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        boolean advance() {
+            return iterator.hasNext() && found(iterator.nextLong());
+        }
+
+        @Override
+        void closeSources() {
+            if (iterator instanceof AutoCloseable) LazyIterator.closeUnchecked((AutoCloseable) iterator);
+        }
+    }
+
+    static class FromObjects<T> extends LongIterator {
+
+        private final LazyIterator<T> source;
+        private final ToLongFunction<? super T> function;
+
+        FromObjects(LazyIterator<T> source, ToLongFunction<? super T> function) {
+            this.source = source;
+            this.function = function;
+        }
+
+        @Override
+        boolean advance() {
+            return source.hasNext() && found(function.applyAsLong(source.next()));
+        }
+
+        @Override
+        void closeSources() {
+            source.close();
+        }
+    }
+}
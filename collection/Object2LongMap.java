@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.util.Arrays;
+
+/**
+ * A map from object keys to primitive long values, which stores neither boxed values nor entry nodes. Keys may not be null.
+ *
+ * The table uses open addressing with linear probing and backward-shift deletion, so it never holds tombstones.
+ * {@link #clear()} keeps the allocated table, so the same instance can be reused as scratch space.
+ */
+public class Object2LongMap<K> {
+
+    private static final float DEFAULT_LOAD_FACTOR = 0.6f;
+    private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    private final float loadFactor;
+    private Object[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    public Object2LongMap() {
+        this(16, DEFAULT_LOAD_FACTOR);
+    }
+
+    public Object2LongMap(int expectedSize) {
+        this(expectedSize, DEFAULT_LOAD_FACTOR);
+    }
+
+    public Object2LongMap(int expectedSize, float loadFactor) {
+        if (loadFactor <= 0 || loadFactor >= 1) throw new IllegalArgumentException("Load factor must be in (0, 1): " + loadFactor);
+        this.loadFactor = loadFactor;
+        allocate(capacity(expectedSize, loadFactor));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(Object key) {
+        return keys[slot(key)] != null;
+    }
+
+    /**
+     * @return the value for the key, or 0 if it is absent
+     */
+    public long get(Object key) {
+        return getOrDefault(key, 0);
+    }
+
+    public long getOrDefault(Object key, long defaultValue) {
+        int slot = slot(key);
+        return keys[slot] != null ? values[slot] : defaultValue;
+    }
+
+    /**
+     * @return true if the key was not already present
+     */
+    public boolean put(K key, long value) {
+        int slot = slot(key);
+        if (keys[slot] != null) {
+            values[slot] = value;
+            return false;
+        }
+        if (size >= resizeAt) slot = grow(key);
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * Add the delta to the value for the key, treating an absent key as 0.
+     *
+     * @return the new value
+     */
+    public long addTo(K key, long delta) {
+        int slot = slot(key);
+        if (keys[slot] != null) return values[slot] += delta;
+        if (size >= resizeAt) slot = grow(key);
+        keys[slot] = key;
+        values[slot] = delta;
+        size++;
+        return delta;
+    }
+
+    /**
+     * @return true if the key was present
+     */
+    public boolean remove(Object key) {
+        int slot = slot(key);
+        if (keys[slot] == null) return false;
+        shiftBack(slot);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    /**
+     * Iterate the entries without boxing. The map must not be modified during iteration.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private int slot(Object key) {
+        int slot = (int) Hashing.mix(key.hashCode()) & mask;
+        while (keys[slot] != null && !keys[slot].equals(key)) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private int nextSlot(int from) {
+        int slot = from;
+        while (slot < keys.length && keys[slot] == null) slot++;
+        return slot;
+    }
+
+    // close the gap left at the slot by moving back any later entry of the same probe sequence
+    private void shiftBack(int gap) {
+        for (int slot = (gap + 1) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            int ideal = (int) Hashing.mix(keys[slot].hashCode()) & mask;
+            if (((slot - ideal) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = keys[slot];
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = null;
+    }
+
+    /**
+     * Double the table, before inserting a key that would exceed its load factor.
+     *
+     * @return the key's slot in the new table
+     */
+    private int grow(K key) {
+        if (keys.length == MAXIMUM_CAPACITY) throw new IllegalStateException("Map is full at " + size + " entries");
+        rehash(keys.length * 2);
+        return slot(key);
+    }
+
+    private void rehash(int capacity) {
+        Object[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = slot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.min(capacity - 1, (int) (capacity * loadFactor));
+    }
+
+    private static int capacity(int expectedSize, float loadFactor) {
+        long capacity = Long.highestOneBit(Math.max(2, (long) Math.ceil(expectedSize / loadFactor)) * 2 - 1);
+        if (capacity > MAXIMUM_CAPACITY) throw new IllegalArgumentException("Too many entries: " + expectedSize);
+        return (int) capacity;
+    }
+
+    public class Cursor {
+
+        private int slot = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * @return false once there are no more entries
+         */
+        public boolean advance() {
+            slot = nextSlot(slot + 1);
+            return slot < keys.length;
+        }
+
+        @SuppressWarnings("unchecked")
+        public K key() {
+            return (K) keys[slot];
+        }
+
+        public long value() {
+            return values[slot];
+        }
+    }
+}
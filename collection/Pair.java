@@ -29,7 +29,7 @@ public class Pair<FIRST, SECOND> {
     public Pair(FIRST first, SECOND second) {
         this.first = first;
         this.second = second;
-        this.hash = Objects.hash(this.first, this.second);
+        this.hash = Hashing.hashCode(this.first, this.second);
     }
 
     public FIRST first() {
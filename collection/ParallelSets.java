@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import com.vaticle.typedb.common.concurrent.NamedForkJoinWorkerThreadFactory;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * Set algebra for very large sets, which splits the input being scanned across a fork-join pool. Each task filters a
+ * slice of the input straight into a presized concurrent result set, so both the scan and the construction of the
+ * result run in parallel, and nothing is merged on join. Inputs smaller than the threshold are processed sequentially
+ * into a {@link HashSet}; larger results are concurrent sets, which cannot hold null.
+ */
+public class ParallelSets {
+
+    public static final int THRESHOLD = 1 << 15;
+    private static final int MIN_SLICE = 1 << 12;
+
+    private static ForkJoinPool pool() {
+        return DefaultPool.POOL;
+    }
+
+    // created on first use, so that sequential callers never start the pool
+    private static class DefaultPool {
+        private static final ForkJoinPool POOL = new ForkJoinPool(
+                Runtime.getRuntime().availableProcessors(),
+                NamedForkJoinWorkerThreadFactory.create(ParallelSets.class, "worker"), null, false
+        );
+    }
+
+    public static <T> Set<T> intersection(Set<T> set1, Set<T> set2) {
+        return intersection(set1, set2, pool());
+    }
+
+    public static <T> Set<T> intersection(Set<T> set1, Set<T> set2, ForkJoinPool pool) {
+        Set<T> minSet = set1.size() < set2.size() ? set1 : set2;
+        Set<T> maxSet = minSet == set1 ? set2 : set1;
+        if (minSet.size() < THRESHOLD) return Collections.intersection(set1, set2);
+        Set<T> intersection = ConcurrentHashMap.newKeySet(minSet.size());
+        collect(minSet, maxSet::contains, intersection, pool);
+        return intersection;
+    }
+
+    public static <T> Set<T> union(Set<T> set1, Set<T> set2) {
+        return union(set1, set2, pool());
+    }
+
+    public static <T> Set<T> union(Set<T> set1, Set<T> set2, ForkJoinPool pool) {
+        Set<T> minSet = set1.size() < set2.size() ? set1 : set2;
+        Set<T> maxSet = minSet == set1 ? set2 : set1;
+        if (minSet.size() < THRESHOLD) {
+            Set<T> union = new HashSet<>(maxSet);
+            union.addAll(minSet);
+            return union;
+        }
+        Set<T> union = ConcurrentHashMap.newKeySet(maxSet.size() + minSet.size());
+        collect(maxSet, e -> true, union, pool);
+        collect(minSet, e -> true, union, pool);
+        return union;
+    }
+
+    /**
+     * @return the elements of {@code set1} which are not in {@code set2}
+     */
+    public static <T> Set<T> difference(Set<T> set1, Set<T> set2) {
+        return difference(set1, set2, pool());
+    }
+
+    public static <T> Set<T> difference(Set<T> set1, Set<T> set2, ForkJoinPool pool) {
+        if (set1.size() < THRESHOLD) {
+            Set<T> difference = new HashSet<>();
+            for (T elem : set1) {
+                if (!set2.contains(elem)) difference.add(elem);
+            }
+            return difference;
+        }
+        Set<T> difference = ConcurrentHashMap.newKeySet(set1.size());
+        collect(set1, e -> !set2.contains(e), difference, pool);
+        return difference;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void collect(Set<T> source, Predicate<T> predicate, Set<T> target, ForkJoinPool pool) {
+        T[] elements = (T[]) source.toArray();
+        int slice = Math.max(MIN_SLICE, elements.length / (pool.getParallelism() * 4));
+        pool.invoke(new Collect<>(elements, 0, elements.length, slice, predicate, target));
+    }
+
+    private static class Collect<T> extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final T[] elements;
+        private final int from;
+        private final int to;
+        private final int slice;
+        private final Predicate<T> predicate;
+        private final Set<T> target;
+
+        private Collect(T[] elements, int from, int to, int slice, Predicate<T> predicate, Set<T> target) {
+            this.elements = elements;
+            this.from = from;
+            this.to = to;
+            this.slice = slice;
+            this.predicate = predicate;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= slice) {
+                for (int i = from; i < to; i++) {
+                    if (predicate.test(elements[i])) target.add(elements[i]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Collect<>(elements, from, mid, slice, predicate, target),
+                      new Collect<>(elements, mid, to, slice, predicate, target));
+        }
+    }
+}
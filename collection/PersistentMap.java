@@ -0,0 +1,320 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable hash array mapped trie. Adding or removing an entry copies only the O(log n) nodes on the path to it,
+ * and shares the rest of the trie with the original map.
+ */
+public class PersistentMap<K, V> extends AbstractMap<K, V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Object NOT_FOUND = new Object();
+    private static final Object SUB_NODE = new Object();
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(Node.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentMap<K, V> of(Map<? extends K, ? extends V> map) {
+        if (map instanceof PersistentMap) return (PersistentMap<K, V>) map;
+        PersistentMap<K, V> persistent = empty();
+        for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+            persistent = persistent.plus(entry.getKey(), entry.getValue());
+        }
+        return persistent;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root.get(0, hash(key), key) != NOT_FOUND;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        Object value = root.get(0, hash(key), key);
+        return value == NOT_FOUND ? null : (V) value;
+    }
+
+    public PersistentMap<K, V> plus(K key, V value) {
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(0, hash(key), key, value, added);
+        return newRoot == root ? this : new PersistentMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    public PersistentMap<K, V> minus(Object key) {
+        Node newRoot = root.remove(0, hash(key), key);
+        if (newRoot == root) return this;
+        return new PersistentMap<>(newRoot == null ? Node.EMPTY : newRoot, size - 1);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new NodeIterator<Map.Entry<K, V>>(root) {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    Map.Entry<K, V> entry(Object key, Object value) {
+                        return new SimpleImmutableEntry<>((K) key, (V) value);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    Iterator<K> keyIterator() {
+        return new NodeIterator<K>(root) {
+            @Override
+            @SuppressWarnings("unchecked")
+            K entry(Object key, Object value) {
+                return (K) key;
+            }
+        };
+    }
+
+    private static int hash(Object key) {
+        int h = Objects.hashCode(key);
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * A trie node, whose array holds key-value pairs in adjacent slots. In a bitmap node, a pair may instead be
+     * SUB_NODE followed by the child node. A collision node only holds pairs that share the same full hash.
+     */
+    private static class Node {
+
+        private static final Node EMPTY = new Node(0, new Object[0], false);
+
+        private final int bitmap;
+        private final Object[] array;
+        private final boolean collision;
+
+        private Node(int bitmap, Object[] array, boolean collision) {
+            this.bitmap = bitmap;
+            this.array = array;
+            this.collision = collision;
+        }
+
+        private Object get(int shift, int hash, Object key) {
+            if (collision) {
+                int index = collisionIndex(key);
+                return index < 0 ? NOT_FOUND : array[index + 1];
+            }
+            int bit = bit(shift, hash);
+            if ((bitmap & bit) == 0) return NOT_FOUND;
+            int index = index(bit);
+            Object k = array[index];
+            if (k == SUB_NODE) return ((Node) array[index + 1]).get(shift + BITS, hash, key);
+            return Objects.equals(k, key) ? array[index + 1] : NOT_FOUND;
+        }
+
+        private Node put(int shift, int hash, Object key, Object value, boolean[] added) {
+            if (collision) return collisionPut(shift, hash, key, value, added);
+            int bit = bit(shift, hash);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, index);
+                newArray[index] = key;
+                newArray[index + 1] = value;
+                System.arraycopy(array, index, newArray, index + 2, array.length - index);
+                added[0] = true;
+                return new Node(bitmap | bit, newArray, false);
+            }
+            Object k = array[index];
+            Object v = array[index + 1];
+            if (k == SUB_NODE) {
+                Node child = ((Node) v).put(shift + BITS, hash, key, value, added);
+                return child == v ? this : replace(index + 1, child);
+            } else if (Objects.equals(k, key)) {
+                return v == value ? this : replace(index + 1, value);
+            } else {
+                added[0] = true;
+                Node child = pair(shift + BITS, PersistentMap.hash(k), k, v, hash, key, value);
+                Object[] newArray = array.clone();
+                newArray[index] = SUB_NODE;
+                newArray[index + 1] = child;
+                return new Node(bitmap, newArray, false);
+            }
+        }
+
+        private Node collisionPut(int shift, int hash, Object key, Object value, boolean[] added) {
+            int collisionHash = PersistentMap.hash(array[0]);
+            if (hash != collisionHash) {
+                Node parent = new Node(bit(shift, collisionHash), new Object[]{SUB_NODE, this}, false);
+                return parent.put(shift, hash, key, value, added);
+            }
+            int index = collisionIndex(key);
+            if (index >= 0) return array[index + 1] == value ? this : replace(index + 1, value);
+            Object[] newArray = Arrays.copyOf(array, array.length + 2);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            added[0] = true;
+            return new Node(0, newArray, true);
+        }
+
+        /**
+         * @return the node without the key, this node if the key is absent, or null if the node is left empty
+         */
+        private Node remove(int shift, int hash, Object key) {
+            if (collision) {
+                int index = collisionIndex(key);
+                if (index < 0) return this;
+                if (array.length == 2) return null;
+                return new Node(0, without(index), true);
+            }
+            int bit = bit(shift, hash);
+            if ((bitmap & bit) == 0) return this;
+            int index = index(bit);
+            Object k = array[index];
+            if (k == SUB_NODE) {
+                Node child = (Node) array[index + 1];
+                Node newChild = child.remove(shift + BITS, hash, key);
+                if (newChild == child) return this;
+                if (newChild != null) {
+                    if (newChild.array.length == 2 && newChild.array[0] != SUB_NODE) {
+                        // inline a child left holding a single entry
+                        Object[] newArray = array.clone();
+                        newArray[index] = newChild.array[0];
+                        newArray[index + 1] = newChild.array[1];
+                        return new Node(bitmap, newArray, false);
+                    }
+                    return replace(index + 1, newChild);
+                }
+            } else if (!Objects.equals(k, key)) {
+                return this;
+            }
+            if (bitmap == bit) return null;
+            return new Node(bitmap ^ bit, without(index), false);
+        }
+
+        private static Node pair(int shift, int hash1, Object key1, Object value1, int hash2, Object key2, Object value2) {
+            if (hash1 == hash2) return new Node(0, new Object[]{key1, value1, key2, value2}, true);
+            boolean[] added = new boolean[1];
+            return EMPTY.put(shift, hash1, key1, value1, added).put(shift, hash2, key2, value2, added);
+        }
+
+        private Node replace(int index, Object value) {
+            Object[] newArray = array.clone();
+            newArray[index] = value;
+            return new Node(bitmap, newArray, collision);
+        }
+
+        private Object[] without(int index) {
+            Object[] newArray = new Object[array.length - 2];
+            System.arraycopy(array, 0, newArray, 0, index);
+            System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+            return newArray;
+        }
+
+        private int collisionIndex(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (Objects.equals(array[i], key)) return i;
+            }
+            return -1;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1)) << 1;
+        }
+
+        private static int bit(int shift, int hash) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+    }
+
+    private abstract static class NodeIterator<E> implements Iterator<E> {
+
+        private final Node[] nodes = new Node[8];
+        private final int[] indices = new int[8];
+        private int depth = 0;
+        private boolean ready = false;
+
+        private NodeIterator(Node root) {
+            nodes[0] = root;
+        }
+
+        abstract E entry(Object key, Object value);
+
+        @Override
+        public boolean hasNext() {
+            if (ready) return true;
+            while (depth >= 0) {
+                Node node = nodes[depth];
+                int index = indices[depth];
+                if (index >= node.array.length) {
+                    depth--;
+                } else if (node.array[index] == SUB_NODE) {
+                    indices[depth] += 2;
+                    depth++;
+                    nodes[depth] = (Node) node.array[index + 1];
+                    indices[depth] = 0;
+                } else {
+                    ready = true;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Node node = nodes[depth];
+            int index = indices[depth];
+            indices[depth] += 2;
+            ready = false;
+            return entry(node.array[index], node.array[index + 1]);
+        }
+    }
+}
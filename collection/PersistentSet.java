@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * An immutable set backed by a {@link PersistentMap}, sharing structure between versions.
+ */
+public class PersistentSet<T> extends AbstractSet<T> {
+
+    private static final PersistentSet<?> EMPTY = new PersistentSet<>(PersistentMap.empty());
+
+    private final PersistentMap<T, Boolean> map;
+
+    private PersistentSet(PersistentMap<T, Boolean> map) {
+        this.map = map;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentSet<T> empty() {
+        return (PersistentSet<T>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentSet<T> of(Collection<? extends T> collection) {
+        if (collection instanceof PersistentSet) return (PersistentSet<T>) collection;
+        return PersistentSet.<T>empty().plusAll(collection);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return map.containsKey(o);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return map.keyIterator();
+    }
+
+    public PersistentSet<T> plus(T item) {
+        PersistentMap<T, Boolean> newMap = map.plus(item, Boolean.TRUE);
+        return newMap == map ? this : new PersistentSet<>(newMap);
+    }
+
+    public PersistentSet<T> plusAll(Collection<? extends T> items) {
+        PersistentMap<T, Boolean> newMap = map;
+        for (T item : items) newMap = newMap.plus(item, Boolean.TRUE);
+        return newMap == map ? this : new PersistentSet<>(newMap);
+    }
+
+    public PersistentSet<T> minus(Object item) {
+        PersistentMap<T, Boolean> newMap = map.minus(item);
+        return newMap == map ? this : new PersistentSet<>(newMap);
+    }
+}
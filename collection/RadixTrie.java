@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.collection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+import static com.vaticle.typedb.common.collection.Collections.pair;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An immutable radix trie from {@code byte[]} or {@code String} keys to values, supporting exact, prefix and
+ * longest-prefix lookups. String keys are stored as UTF-8, so they are iterated in code point order.
+ *
+ * The trie is frozen into flat arrays: nodes are numbered breadth-first, so the children of a node are contiguous and
+ * are found by binary search over the first bytes of their edge labels, and all edge labels share one byte array.
+ * Labels are appended in node order too, so the label and children of node i end where those of node i + 1 begin,
+ * and each of those two arrays holds one extra entry to end the last node.
+ */
+public class RadixTrie<V> {
+
+    private final byte[] labels;
+    private final int[] labelStart;
+    private final byte[] firstByte;
+    private final int[] firstChild;
+    private final Object[] values;
+    private final int size;
+
+    private RadixTrie(byte[] labels, int[] labelStart, byte[] firstByte, int[] firstChild, Object[] values, int size) {
+        this.labels = labels;
+        this.labelStart = labelStart;
+        this.firstByte = firstByte;
+        this.firstChild = firstChild;
+        this.values = values;
+        this.size = size;
+    }
+
+    public static <V> Builder<V> builder() {
+        return new Builder<>();
+    }
+
+    public static <V> RadixTrie<V> of(Map<String, V> entries) {
+        Builder<V> builder = new Builder<>();
+        entries.forEach(builder::put);
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public V get(String key) {
+        return get(key.getBytes(UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(byte[] key) {
+        int node = 0, position = 0;
+        while (position < key.length) {
+            node = child(node, key[position]);
+            if (node < 0) return null;
+            int length = labelStart[node + 1] - labelStart[node];
+            if (key.length - position < length ||
+                    !Arrays.equals(labels, labelStart[node], labelStart[node + 1], key, position, position + length)) {
+                return null;
+            }
+            position += length;
+        }
+        return (V) values[node];
+    }
+
+    public boolean containsKey(String key) {
+        return get(key) != null;
+    }
+
+    public boolean containsKey(byte[] key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return the longest key in the trie that is a prefix of the given key, with its value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public Pair<String, V> longestPrefixMatch(String key) {
+        byte[] bytes = key.getBytes(UTF_8);
+        long match = longestPrefix(bytes);
+        if (match < 0) return null;
+        return pair(new String(bytes, 0, (int) match, UTF_8), (V) values[(int) (match >>> 32)]);
+    }
+
+    /**
+     * @return the longest key in the trie that is a prefix of the given key, with its value, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public Pair<byte[], V> longestPrefixMatch(byte[] key) {
+        long match = longestPrefix(key);
+        if (match < 0) return null;
+        return pair(Arrays.copyOf(key, (int) match), (V) values[(int) (match >>> 32)]);
+    }
+
+    /**
+     * @return the node of the longest matching key in the high 32 bits and the key's length in the low 32 bits, or -1
+     */
+    private long longestPrefix(byte[] key) {
+        int node = 0, position = 0;
+        long longest = values[0] != null ? 0 : -1;
+        while (position < key.length) {
+            node = child(node, key[position]);
+            if (node < 0) break;
+            int length = labelStart[node + 1] - labelStart[node];
+            if (key.length - position < length ||
+                    !Arrays.equals(labels, labelStart[node], labelStart[node + 1], key, position, position + length)) {
+                break;
+            }
+            position += length;
+            if (values[node] != null) longest = ((long) node << 32) | position;
+        }
+        return longest;
+    }
+
+    /**
+     * Iterate every entry in key order.
+     */
+    public Cursor cursor() {
+        return new Cursor(0, new byte[16], 0);
+    }
+
+    public Cursor prefix(String prefix) {
+        return prefix(prefix.getBytes(UTF_8));
+    }
+
+    /**
+     * Iterate the entries whose keys start with the prefix, in key order.
+     */
+    public Cursor prefix(byte[] prefix) {
+        byte[] path = new byte[Math.max(16, prefix.length)];
+        int node = 0, position = 0;
+        while (position < prefix.length) {
+            node = child(node, prefix[position]);
+            if (node < 0) return new Cursor(-1, path, 0);
+            // the prefix may end part way along the edge, in which case the whole subtree below it matches
+            int length = Math.min(labelStart[node + 1] - labelStart[node], prefix.length - position);
+            if (!Arrays.equals(labels, labelStart[node], labelStart[node] + length, prefix, position, position + length)) {
+                return new Cursor(-1, path, 0);
+            }
+            int full = labelStart[node + 1] - labelStart[node];
+            if (path.length < position + full) path = Arrays.copyOf(path, Math.max(position + full, path.length * 2));
+            System.arraycopy(labels, labelStart[node], path, position, full);
+            position += full;
+        }
+        return new Cursor(node, path, position);
+    }
+
+    // binary search the children of the node by the first byte of their edge label
+    private int child(int node, byte first) {
+        int low = firstChild[node], high = firstChild[node + 1] - 1;
+        int target = first & 0xFF;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = firstByte[mid] & 0xFF;
+            if (value < target) low = mid + 1;
+            else if (value > target) high = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    /**
+     * A depth-first cursor over the entries below a node. Keys are assembled in a buffer owned by the cursor.
+     */
+    public class Cursor {
+
+        private int[] nodes;
+        private int[] depths;
+        private int stack;
+        private byte[] key;
+        private int keyLength;
+        private int node;
+        private boolean started;
+
+        // the path to the root of the cursor is already in the key buffer
+        private Cursor(int root, byte[] path, int depth) {
+            this.nodes = new int[16];
+            this.depths = new int[16];
+            this.key = path;
+            if (root >= 0) {
+                nodes[0] = root;
+                depths[0] = depth;
+                stack = 1;
+            }
+        }
+
+        /**
+         * @return false once there are no more entries
+         */
+        public boolean advance() {
+            while (stack > 0) {
+                stack--;
+                int current = nodes[stack];
+                keyLength = depths[stack];
+                if (started) appendLabel(current);
+                started = true;
+                int children = firstChild[current + 1] - firstChild[current];
+                if (stack + children > nodes.length) {
+                    int capacity = Math.max(stack + children, nodes.length * 2);
+                    nodes = Arrays.copyOf(nodes, capacity);
+                    depths = Arrays.copyOf(depths, capacity);
+                }
+                // push the children in reverse, so that they are visited in byte order
+                for (int child = firstChild[current] + children - 1; child >= firstChild[current]; child--) {
+                    nodes[stack] = child;
+                    depths[stack] = keyLength;
+                    stack++;
+                }
+                if (values[current] != null) {
+                    node = current;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void appendLabel(int current) {
+            int length = labelStart[current + 1] - labelStart[current];
+            if (key.length < keyLength + length) key = Arrays.copyOf(key, Math.max(keyLength + length, key.length * 2));
+            System.arraycopy(labels, labelStart[current], key, keyLength, length);
+            keyLength += length;
+        }
+
+        public byte[] keyBytes() {
+            return Arrays.copyOf(key, keyLength);
+        }
+
+        public String keyString() {
+            return new String(key, 0, keyLength, UTF_8);
+        }
+
+        @SuppressWarnings("unchecked")
+        public V value() {
+            return (V) values[node];
+        }
+    }
+
+    public static class Builder<V> {
+
+        private final TreeMap<byte[], V> entries;
+
+        private Builder() {
+            this.entries = new TreeMap<>(Arrays::compareUnsigned);
+        }
+
+        public Builder<V> put(String key, V value) {
+            return put(key.getBytes(UTF_8), value);
+        }
+
+        public Builder<V> put(byte[] key, V value) {
+            entries.put(key.clone(), Objects.requireNonNull(value));
+            return this;
+        }
+
+        public RadixTrie<V> build() {
+            byte[][] keys = entries.keySet().toArray(new byte[0][]);
+            Object[] entryValues = entries.values().toArray();
+            List<int[]> pending = new ArrayList<>(); // {from, to, depth, labelStart, labelEnd} of each node
+            pending.add(new int[]{0, keys.length, 0, 0, 0});
+            ByteArray labels = new ByteArray();
+            int capacity = 2 * keys.length + 2;
+            int[] labelStart = new int[capacity], firstChild = new int[capacity];
+            byte[] firstByte = new byte[capacity];
+            Object[] values = new Object[capacity];
+            // number the nodes breadth-first, so that the children of each node are appended contiguously
+            for (int node = 0; node < pending.size(); node++) {
+                int[] range = pending.get(node);
+                int from = range[0], to = range[1], depth = range[2];
+                labelStart[node] = range[3];
+                if (range[4] > range[3]) firstByte[node] = labels.get(range[3]);
+                if (from < to && keys[from].length == depth) values[node] = entryValues[from++];
+                firstChild[node] = pending.size();
+                while (from < to) {
+                    byte first = keys[from][depth];
+                    int end = from + 1;
+                    while (end < to && keys[end][depth] == first) end++;
+                    // keys are sorted, so the prefix common to the group is the one common to its first and last keys
+                    int common = depth + commonPrefix(keys[from], keys[end - 1], depth);
+                    int start = labels.size();
+                    labels.add(keys[from], depth, common);
+                    pending.add(new int[]{from, end, common, start, labels.size()});
+                    from = end;
+                }
+            }
+            int nodes = pending.size();
+            labelStart[nodes] = labels.size();
+            firstChild[nodes] = nodes;
+            return new RadixTrie<>(labels.toArray(), Arrays.copyOf(labelStart, nodes + 1), Arrays.copyOf(firstByte, nodes),
+                                   Arrays.copyOf(firstChild, nodes + 1), Arrays.copyOf(values, nodes), keys.length);
+        }
+
+        private static int commonPrefix(byte[] first, byte[] second, int from) {
+            int mismatch = Arrays.mismatch(first, from, first.length, second, from, second.length);
+            return mismatch < 0 ? first.length - from : mismatch;
+        }
+    }
+
+    private static class ByteArray {
+
+        private byte[] bytes = new byte[64];
+        private int size;
+
+        private int size() {
+            return size;
+        }
+
+        private byte get(int index) {
+            return bytes[index];
+        }
+
+        private void add(byte[] source, int from, int to) {
+            int length = to - from;
+            if (size + length > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(size + length, bytes.length * 2));
+            System.arraycopy(source, from, bytes, size, length);
+            size += length;
+        }
+
+        private byte[] toArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -0,0 +1,845 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of ints, in the style of Roaring bitmaps. Values are partitioned by their high 16 bits into
+ * containers holding the low 16 bits, each stored as a sorted array when sparse, a 2^16-bit bitmap when dense, or a
+ * list of runs when {@link #runOptimize()} finds that smaller. Values are iterated in unsigned order.
+ *
+ * The bitmap is a mutable {@code Set<Integer>}, but the primitive methods avoid boxing. {@link #serialize(ByteBuffer)}
+ * writes the layout read in place by {@link ImmutableRoaringBitmap}.
+ */
+public class RoaringBitmap extends AbstractSet<Integer> {
+
+    static final int MAGIC = 0x524F4152; // "ROAR"
+    static final byte ARRAY = 0;
+    static final byte BITMAP = 1;
+    static final byte RUN = 2;
+    static final int HEADER_SIZE = 8;
+    static final int ENTRY_SIZE = 12;
+    static final int MAX_ARRAY_SIZE = 4096;
+    static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int count;
+
+    public RoaringBitmap() {
+        this(new char[4], new Container[4], 0);
+    }
+
+    private RoaringBitmap(char[] keys, Container[] containers, int count) {
+        this.keys = keys;
+        this.containers = containers;
+        this.count = count;
+    }
+
+    public static RoaringBitmap of(int... values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) bitmap.add(value);
+        return bitmap;
+    }
+
+    public static RoaringBitmap of(Collection<Integer> values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : values) bitmap.add(value);
+        return bitmap;
+    }
+
+    public boolean add(int value) {
+        char key = high(value);
+        int index = indexOf(key);
+        if (index < 0) {
+            insert(-index - 1, key, new ArrayContainer().add(low(value)));
+            return true;
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add(low(value));
+        return containers[index].cardinality() != before;
+    }
+
+    public boolean remove(int value) {
+        int index = indexOf(high(value));
+        if (index < 0) return false;
+        Container container = containers[index];
+        int before = container.cardinality();
+        Container updated = container.remove(low(value));
+        if (updated.cardinality() == 0) delete(index);
+        else containers[index] = updated;
+        return updated.cardinality() != before;
+    }
+
+    public boolean contains(int value) {
+        int index = indexOf(high(value));
+        return index >= 0 && containers[index].contains(low(value));
+    }
+
+    @Override
+    public boolean add(Integer value) {
+        return add(value.intValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Integer && remove(((Integer) o).intValue());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+    public long cardinality() {
+        long cardinality = 0;
+        for (int i = 0; i < count; i++) cardinality += containers[i].cardinality();
+        return cardinality;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, cardinality());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(containers, 0, count, null);
+        count = 0;
+    }
+
+    public static RoaringBitmap and(RoaringBitmap first, RoaringBitmap second) {
+        return and(first.view(), second.view());
+    }
+
+    public static long andCardinality(RoaringBitmap first, RoaringBitmap second) {
+        return andCardinality(first.view(), second.view());
+    }
+
+    public static RoaringBitmap or(RoaringBitmap first, RoaringBitmap second) {
+        return or(first.view(), second.view());
+    }
+
+    /**
+     * @return the values of {@code first} which are not in {@code second}
+     */
+    public static RoaringBitmap andNot(RoaringBitmap first, RoaringBitmap second) {
+        return andNot(first.view(), second.view());
+    }
+
+    static RoaringBitmap and(View first, View second) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < first.count() && j < second.count()) {
+            int cmp = Character.compare(first.key(i), second.key(j));
+            if (cmp < 0) i++;
+            else if (cmp > 0) j++;
+            else {
+                Container container = first.container(i).and(second.container(j));
+                if (container.cardinality() > 0) result.insert(result.count, first.key(i), container);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    static long andCardinality(View first, View second) {
+        long cardinality = 0;
+        int i = 0, j = 0;
+        while (i < first.count() && j < second.count()) {
+            int cmp = Character.compare(first.key(i), second.key(j));
+            if (cmp < 0) i++;
+            else if (cmp > 0) j++;
+            else cardinality += first.container(i++).andCardinality(second.container(j++));
+        }
+        return cardinality;
+    }
+
+    static RoaringBitmap or(View first, View second) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < first.count() || j < second.count()) {
+            int cmp = i == first.count() ? 1 : j == second.count() ? -1 : Character.compare(first.key(i), second.key(j));
+            if (cmp < 0) {
+                result.insert(result.count, first.key(i), first.container(i++).copy());
+            } else if (cmp > 0) {
+                result.insert(result.count, second.key(j), second.container(j++).copy());
+            } else {
+                result.insert(result.count, first.key(i), first.container(i++).or(second.container(j++)));
+            }
+        }
+        return result;
+    }
+
+    static RoaringBitmap andNot(View first, View second) {
+        RoaringBitmap result = new RoaringBitmap();
+        int j = 0;
+        for (int i = 0; i < first.count(); i++) {
+            while (j < second.count() && second.key(j) < first.key(i)) j++;
+            Container container = j < second.count() && second.key(j) == first.key(i)
+                    ? first.container(i).andNot(second.container(j))
+                    : first.container(i).copy();
+            if (container.cardinality() > 0) result.insert(result.count, first.key(i), container);
+        }
+        return result;
+    }
+
+    /**
+     * Convert each container to run encoding where that is smaller, or back where it is not.
+     */
+    public void runOptimize() {
+        for (int i = 0; i < count; i++) containers[i] = containers[i].optimize();
+    }
+
+    /**
+     * Pass each value to the consumer in unsigned order, without boxing.
+     */
+    public void forEachInt(IntConsumer consumer) {
+        for (int i = 0; i < count; i++) containers[i].forEach(keys[i] << 16, consumer);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+
+            private int key = count == 0 ? -1 : keys[0];
+            private int next = key < 0 ? -1 : containers[0].nextValue(0);
+            private int last = -1;
+            private boolean hasLast = false;
+
+            @Override
+            public boolean hasNext() {
+                return key >= 0;
+            }
+
+            @Override
+            public Integer next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                last = (key << 16) | next;
+                hasLast = true;
+                advance(key, next + 1);
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (!hasLast) throw new IllegalStateException();
+                RoaringBitmap.this.remove(last);
+                hasLast = false;
+            }
+
+            private void advance(int fromKey, int fromLow) {
+                int index = indexOf((char) fromKey);
+                if (index < 0) index = -index - 1;
+                else if (fromLow <= 0xFFFF) {
+                    int low = containers[index].nextValue(fromLow);
+                    if (low >= 0) {
+                        next = low;
+                        return;
+                    }
+                    index++;
+                } else {
+                    index++;
+                }
+                if (index >= count) key = -1;
+                else {
+                    key = keys[index];
+                    next = containers[index].nextValue(0);
+                }
+            }
+        };
+    }
+
+    public int serializedSize() {
+        int size = HEADER_SIZE + ENTRY_SIZE * count;
+        for (int i = 0; i < count; i++) size += containers[i].serializedSize();
+        return size;
+    }
+
+    /**
+     * Write this bitmap in little-endian order, starting at the buffer's position.
+     */
+    public void serialize(ByteBuffer buffer) {
+        ByteBuffer out = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(count);
+        int offset = HEADER_SIZE + ENTRY_SIZE * count;
+        for (int i = 0; i < count; i++) {
+            out.putChar(keys[i]).put(containers[i].type()).put((byte) 0);
+            out.putInt(containers[i].cardinality()).putInt(offset);
+            offset += containers[i].serializedSize();
+        }
+        for (int i = 0; i < count; i++) containers[i].serialize(out);
+        buffer.position(buffer.position() + out.position());
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(serializedSize());
+        serialize(buffer);
+        return buffer.array();
+    }
+
+    View view() {
+        return new View() {
+            @Override
+            int count() {
+                return count;
+            }
+
+            @Override
+            char key(int index) {
+                return keys[index];
+            }
+
+            @Override
+            Container container(int index) {
+                return containers[index];
+            }
+        };
+    }
+
+    void insertDeserialized(char key, Container container) {
+        insert(count, key, container);
+    }
+
+    private int indexOf(char key) {
+        if (count > 0 && keys[count - 1] == key) return count - 1;
+        return Arrays.binarySearch(keys, 0, count, key);
+    }
+
+    private void insert(int index, char key, Container container) {
+        if (count == keys.length) {
+            keys = Arrays.copyOf(keys, count * 2);
+            containers = Arrays.copyOf(containers, count * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        keys[index] = key;
+        containers[index] = container;
+        count++;
+    }
+
+    private void delete(int index) {
+        System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, count - index - 1);
+        containers[--count] = null;
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    /**
+     * The keys and containers of a bitmap, in key order, whether held in memory or read from a serialized form.
+     */
+    abstract static class View {
+
+        abstract int count();
+
+        abstract char key(int index);
+
+        abstract Container container(int index);
+    }
+
+    abstract static class Container {
+
+        abstract byte type();
+
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        /**
+         * @return the smallest value at least {@code from}, or -1 if there is none
+         */
+        abstract int nextValue(int from);
+
+        abstract void forEach(int high, IntConsumer consumer);
+
+        abstract Container copy();
+
+        abstract int serializedSize();
+
+        abstract void serialize(ByteBuffer buffer);
+
+        abstract void orInto(long[] words);
+
+        abstract void clearFrom(long[] words);
+
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            long[] words = words();
+            long[] otherWords = other.words();
+            for (int i = 0; i < BITMAP_WORDS; i++) words[i] &= otherWords[i];
+            return BitmapContainer.shrink(words);
+        }
+
+        int andCardinality(Container other) {
+            return and(other).cardinality();
+        }
+
+        Container or(Container other) {
+            long[] words = words();
+            other.orInto(words);
+            return BitmapContainer.shrink(words);
+        }
+
+        Container andNot(Container other) {
+            long[] words = words();
+            other.clearFrom(words);
+            return BitmapContainer.shrink(words);
+        }
+
+        /**
+         * @return a fresh bitmap of this container's values
+         */
+        long[] words() {
+            long[] words = new long[BITMAP_WORDS];
+            orInto(words);
+            return words;
+        }
+
+        Container optimize() {
+            int runs = countRuns();
+            int runSize = RunContainer.serializedSize(runs);
+            int plainSize = cardinality() <= MAX_ARRAY_SIZE ? ArrayContainer.serializedSize(cardinality()) : BitmapContainer.SERIALIZED_SIZE;
+            if (runSize < plainSize) return this instanceof RunContainer ? this : RunContainer.from(this, runs);
+            return this instanceof RunContainer ? BitmapContainer.shrink(words()) : this;
+        }
+
+        int countRuns() {
+            int runs = 0;
+            int previous = -2;
+            for (int value = nextValue(0); value >= 0; value = value == 0xFFFF ? -1 : nextValue(value + 1)) {
+                if (value != previous + 1) runs++;
+                previous = value;
+            }
+            return runs;
+        }
+    }
+
+    static class ArrayContainer extends Container {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        static int serializedSize(int cardinality) {
+            return cardinality * Character.BYTES;
+        }
+
+        @Override
+        byte type() {
+            return ARRAY;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, cardinality, value) >= 0;
+        }
+
+        @Override
+        Container add(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index >= 0) return this;
+            if (cardinality >= MAX_ARRAY_SIZE) return new BitmapContainer(words(), cardinality).add(value);
+            index = -index - 1;
+            if (cardinality == values.length) values = Arrays.copyOf(values, Math.max(4, Math.min(MAX_ARRAY_SIZE, cardinality * 2)));
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, cardinality, value);
+            if (index < 0) return this;
+            System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+            cardinality--;
+            return this;
+        }
+
+        @Override
+        int nextValue(int from) {
+            int index = Arrays.binarySearch(values, 0, cardinality, (char) from);
+            if (index < 0) index = -index - 1;
+            return index < cardinality ? values[index] : -1;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) consumer.accept(high | values[i]);
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, cardinality), cardinality);
+        }
+
+        @Override
+        int serializedSize() {
+            return serializedSize(cardinality);
+        }
+
+        @Override
+        void serialize(ByteBuffer buffer) {
+            for (int i = 0; i < cardinality; i++) buffer.putChar(values[i]);
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < cardinality; i++) words[values[i] >>> 6] |= 1L << values[i];
+        }
+
+        @Override
+        void clearFrom(long[] words) {
+            for (int i = 0; i < cardinality; i++) words[values[i] >>> 6] &= ~(1L << values[i]);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[cardinality];
+            int size = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) result[size++] = values[i];
+            }
+            return new ArrayContainer(result, size);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int size = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) size++;
+            }
+            return size;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (!(other instanceof ArrayContainer) || cardinality + other.cardinality() > MAX_ARRAY_SIZE) return super.or(other);
+            ArrayContainer that = (ArrayContainer) other;
+            char[] result = new char[cardinality + that.cardinality];
+            int i = 0, j = 0, size = 0;
+            while (i < cardinality && j < that.cardinality) {
+                char a = values[i], b = that.values[j];
+                if (a <= b) i++;
+                if (b <= a) j++;
+                result[size++] = a <= b ? a : b;
+            }
+            while (i < cardinality) result[size++] = values[i++];
+            while (j < that.cardinality) result[size++] = that.values[j++];
+            return new ArrayContainer(result, size);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[cardinality];
+            int size = 0;
+            for (int i = 0; i < cardinality; i++) {
+                if (!other.contains(values[i])) result[size++] = values[i];
+            }
+            return new ArrayContainer(result, size);
+        }
+    }
+
+    static class BitmapContainer extends Container {
+
+        static final int SERIALIZED_SIZE = BITMAP_WORDS * Long.BYTES;
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static Container shrink(long[] words) {
+            int cardinality = 0;
+            for (long word : words) cardinality += Long.bitCount(word);
+            if (cardinality > MAX_ARRAY_SIZE) return new BitmapContainer(words, cardinality);
+            char[] values = new char[cardinality];
+            int size = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    values[size++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values, cardinality);
+        }
+
+        @Override
+        byte type() {
+            return BITMAP;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] |= 1L << value;
+            if (before != words[value >>> 6]) cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long before = words[value >>> 6];
+            words[value >>> 6] &= ~(1L << value);
+            if (before == words[value >>> 6]) return this;
+            cardinality--;
+            return cardinality <= MAX_ARRAY_SIZE ? shrink(words) : this;
+        }
+
+        @Override
+        int nextValue(int from) {
+            if (from > 0xFFFF) return -1;
+            int index = from >>> 6;
+            long word = words[index] & (-1L << from);
+            while (word == 0) {
+                if (++index == BITMAP_WORDS) return -1;
+                word = words[index];
+            }
+            return (index << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                for (long word = words[i]; word != 0; word &= word - 1) {
+                    consumer.accept(high | ((i << 6) + Long.numberOfTrailingZeros(word)));
+                }
+            }
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        int serializedSize() {
+            return SERIALIZED_SIZE;
+        }
+
+        @Override
+        void serialize(ByteBuffer buffer) {
+            for (long word : words) buffer.putLong(word);
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < BITMAP_WORDS; i++) words[i] |= this.words[i];
+        }
+
+        @Override
+        void clearFrom(long[] words) {
+            for (int i = 0; i < BITMAP_WORDS; i++) words[i] &= ~this.words[i];
+        }
+
+        @Override
+        long[] words() {
+            return words.clone();
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (!(other instanceof BitmapContainer)) return other.andCardinality(this);
+            int cardinality = 0;
+            long[] otherWords = ((BitmapContainer) other).words;
+            for (int i = 0; i < BITMAP_WORDS; i++) cardinality += Long.bitCount(words[i] & otherWords[i]);
+            return cardinality;
+        }
+    }
+
+    /**
+     * Runs are stored as pairs of (start, length - 1), sorted by start and never adjacent.
+     */
+    static class RunContainer extends Container {
+
+        private final char[] runs;
+        private final int cardinality;
+
+        RunContainer(char[] runs) {
+            this.runs = runs;
+            int cardinality = 0;
+            for (int i = 1; i < runs.length; i += 2) cardinality += runs[i] + 1;
+            this.cardinality = cardinality;
+        }
+
+        static int serializedSize(int runs) {
+            return Character.BYTES * (1 + 2 * runs);
+        }
+
+        static RunContainer from(Container container, int runCount) {
+            char[] runs = new char[runCount * 2];
+            int run = -1;
+            int previous = -2;
+            for (int value = container.nextValue(0); value >= 0; value = value == 0xFFFF ? -1 : container.nextValue(value + 1)) {
+                if (value != previous + 1) {
+                    run++;
+                    runs[run * 2] = (char) value;
+                } else {
+                    runs[run * 2 + 1]++;
+                }
+                previous = value;
+            }
+            return new RunContainer(runs);
+        }
+
+        @Override
+        byte type() {
+            return RUN;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char value) {
+            int run = runIndex(value);
+            return run >= 0 && value <= runs[run * 2] + runs[run * 2 + 1];
+        }
+
+        // the index of the last run starting at or before the value, or -1
+        private int runIndex(int value) {
+            int low = 0, high = runs.length / 2 - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (runs[mid * 2] <= value) low = mid + 1;
+                else high = mid - 1;
+            }
+            return high;
+        }
+
+        @Override
+        Container add(char value) {
+            return contains(value) ? this : BitmapContainer.shrink(words()).add(value);
+        }
+
+        @Override
+        Container remove(char value) {
+            return contains(value) ? BitmapContainer.shrink(words()).remove(value) : this;
+        }
+
+        @Override
+        int nextValue(int from) {
+            if (from > 0xFFFF) return -1;
+            int run = runIndex(from);
+            if (run >= 0 && from <= runs[run * 2] + runs[run * 2 + 1]) return from;
+            return run + 1 < runs.length / 2 ? runs[(run + 1) * 2] : -1;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < runs.length; i += 2) {
+                for (int value = runs[i], end = runs[i] + runs[i + 1]; value <= end; value++) consumer.accept(high | value);
+            }
+        }
+
+        @Override
+        Container copy() {
+            return this;
+        }
+
+        @Override
+        int serializedSize() {
+            return serializedSize(runs.length / 2);
+        }
+
+        @Override
+        void serialize(ByteBuffer buffer) {
+            buffer.putChar((char) (runs.length / 2));
+            for (char c : runs) buffer.putChar(c);
+        }
+
+        @Override
+        void orInto(long[] words) {
+            for (int i = 0; i < runs.length; i += 2) setRange(words, runs[i], runs[i] + runs[i + 1] + 1, true);
+        }
+
+        @Override
+        void clearFrom(long[] words) {
+            for (int i = 0; i < runs.length; i += 2) setRange(words, runs[i], runs[i] + runs[i + 1] + 1, false);
+        }
+
+        @Override
+        int countRuns() {
+            return runs.length / 2;
+        }
+
+        static void setRange(long[] words, int from, int to, boolean set) {
+            for (int value = from; value < to; ) {
+                int index = value >>> 6;
+                int end = Math.min(to, (index + 1) << 6);
+                long mask = (end - value == 64 ? -1L : ((1L << (end - value)) - 1)) << value;
+                if (set) words[index] |= mask;
+                else words[index] &= ~mask;
+                value = end;
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.collection;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A read-only sorted table of {@code byte[]} keys to {@code byte[]} values, answered directly from a memory-mapped
+ * file. Tables are built once by a streaming {@link Writer}, and opening one costs a single mapping regardless of its
+ * size. Keys are ordered by unsigned lexicographic comparison, as in {@link Arrays#compareUnsigned(byte[], byte[])}.
+ *
+ * Layout: MAGIC (4 bytes), VERSION (1 byte), then the entries in key order, grouped into blocks. Each entry is the
+ * length of the prefix it shares with the previous key, the length of the remaining key suffix, and the value length,
+ * all unsigned varints, followed by the key suffix and the value. The first entry of each block shares nothing, so
+ * its key can be compared in place. The entries are followed by the offset of each block (4 bytes each), and a footer
+ * holding the block count (4 bytes), the entry count (8 bytes), the offset of the block index (4 bytes) and MAGIC.
+ */
+public class SortedKeyIndex {
+
+    private static final int MAGIC = 0x534B4958; // "SKIX"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1;
+    private static final int FOOTER_SIZE = 4 + 8 + 4 + 4;
+    public static final int DEFAULT_BLOCK_ENTRIES = 16;
+
+    private final ByteBuffer buffer;
+    private final int blockCount;
+    private final long size;
+    private final int dataEnd;
+
+    private SortedKeyIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        int footer = buffer.limit() - FOOTER_SIZE;
+        if (footer < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION ||
+                buffer.getInt(footer + 16) != MAGIC) {
+            throw new IllegalArgumentException("Buffer does not hold a SortedKeyIndex");
+        }
+        this.blockCount = buffer.getInt(footer);
+        this.size = buffer.getLong(footer + 4);
+        this.dataEnd = buffer.getInt(footer + 12);
+        if (blockCount < 0 || dataEnd < HEADER_SIZE || dataEnd + 4L * blockCount != footer) {
+            throw new IllegalArgumentException("Corrupt SortedKeyIndex footer");
+        }
+    }
+
+    /**
+     * Read the table held in the buffer's remaining bytes. The buffer must not be modified while the table is in use.
+     */
+    public static SortedKeyIndex map(ByteBuffer buffer) {
+        return new SortedKeyIndex(buffer.slice());
+    }
+
+    public static SortedKeyIndex map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("SortedKeyIndex is larger than 2GB: " + file);
+            return map(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static Writer writer(Path file) throws IOException {
+        return new Writer(file, DEFAULT_BLOCK_ENTRIES);
+    }
+
+    /**
+     * @param blockEntries the number of entries per block, trading the cost of a lookup's linear scan within a block
+     *                     against the space saved by prefix compression
+     */
+    public static Writer writer(Path file, int blockEntries) throws IOException {
+        if (blockEntries < 1) throw new IllegalArgumentException("Block entries must be positive: " + blockEntries);
+        return new Writer(file, blockEntries);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return a read-only view of the value stored under the key, or null if it is absent
+     */
+    public ByteBuffer get(byte[] key) {
+        Cursor cursor = new Cursor(null, null);
+        cursor.seek(key);
+        return cursor.pending && cursor.compareKey(key) == 0 ? cursor.value() : null;
+    }
+
+    public boolean contains(byte[] key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Iterate every entry in key order.
+     */
+    public Cursor cursor() {
+        Cursor cursor = new Cursor(null, null);
+        cursor.position = HEADER_SIZE;
+        return cursor;
+    }
+
+    /**
+     * Iterate the entries whose keys lie within the range, in key order.
+     *
+     * @param from the inclusive lower bound, or null for no lower bound
+     * @param to   the exclusive upper bound, or null for no upper bound
+     */
+    public Cursor range(byte[] from, byte[] to) {
+        Cursor cursor = new Cursor(to, null);
+        if (from == null) cursor.position = HEADER_SIZE;
+        else cursor.seek(from);
+        return cursor;
+    }
+
+    /**
+     * Iterate the entries whose keys start with the prefix, in key order.
+     */
+    public Cursor prefix(byte[] prefix) {
+        Cursor cursor = new Cursor(null, prefix);
+        cursor.seek(prefix);
+        return cursor;
+    }
+
+    private int blockOffset(int block) {
+        return buffer.getInt(dataEnd + 4 * block);
+    }
+
+    /**
+     * A forward cursor over the entries of the table. Keys are reassembled into a buffer owned by the cursor and values
+     * are views of the underlying mapping, so neither is copied onto the heap per entry. The buffer returned by
+     * {@link #key()} is only valid until the next call to {@link #advance()}.
+     */
+    public class Cursor {
+
+        private final ByteBuffer in;
+        private final byte[] to;
+        private final byte[] prefix;
+        private byte[] key;
+        private int keyLength;
+        private int valueOffset;
+        private int valueLength;
+        private int position;
+        private boolean pending;
+        private boolean done;
+
+        private Cursor(byte[] to, byte[] prefix) {
+            this.in = buffer.duplicate();
+            this.to = to;
+            this.prefix = prefix;
+            this.key = new byte[64];
+            this.position = dataEnd;
+        }
+
+        /**
+         * @return false once there are no more entries
+         */
+        public boolean advance() {
+            if (done) return false;
+            if (pending) pending = false;
+            else if (position < dataEnd) decode();
+            else return end();
+            if (to != null && compareKey(to) >= 0) return end();
+            if (prefix != null && (keyLength < prefix.length ||
+                    Arrays.mismatch(key, 0, prefix.length, prefix, 0, prefix.length) >= 0)) {
+                return end();
+            }
+            return true;
+        }
+
+        /**
+         * @return a read-only view of the current key, valid until the next call to {@link #advance()}
+         */
+        public ByteBuffer key() {
+            return ByteBuffer.wrap(key, 0, keyLength).slice().asReadOnlyBuffer();
+        }
+
+        public byte[] keyBytes() {
+            return Arrays.copyOf(key, keyLength);
+        }
+
+        /**
+         * @return a read-only view of the current value in the underlying mapping
+         */
+        public ByteBuffer value() {
+            ByteBuffer value = in.duplicate();
+            value.limit(valueOffset + valueLength).position(valueOffset);
+            return value.slice().asReadOnlyBuffer();
+        }
+
+        private boolean end() {
+            done = true;
+            return false;
+        }
+
+        private int compareKey(byte[] other) {
+            return Arrays.compareUnsigned(key, 0, keyLength, other, 0, other.length);
+        }
+
+        // position on the first entry whose key is not less than the target, to be returned by the next advance()
+        private void seek(byte[] target) {
+            if (blockCount == 0) return;
+            ByteBuffer probe = ByteBuffer.wrap(target);
+            int low = 0, high = blockCount - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (Bytes.compare(firstKey(blockOffset(mid)), probe) <= 0) low = mid;
+                else high = mid - 1;
+            }
+            position = blockOffset(low);
+            while (position < dataEnd) {
+                decode();
+                if (compareKey(target) >= 0) {
+                    pending = true;
+                    return;
+                }
+            }
+        }
+
+        private ByteBuffer firstKey(int offset) {
+            in.position(offset);
+            readVarInt();
+            int length = readVarInt();
+            readVarInt();
+            ByteBuffer first = in.duplicate();
+            first.limit(in.position() + length);
+            return first;
+        }
+
+        private void decode() {
+            in.position(position);
+            int shared = readVarInt();
+            int unshared = readVarInt();
+            valueLength = readVarInt();
+            if (shared > keyLength) throw new IllegalStateException("Corrupt SortedKeyIndex entry at " + position);
+            keyLength = shared + unshared;
+            if (key.length < keyLength) key = Arrays.copyOf(key, Math.max(keyLength, key.length * 2));
+            in.get(key, shared, unshared);
+            valueOffset = in.position();
+            position = valueOffset + valueLength;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = in.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) throw new IllegalStateException("Negative length in SortedKeyIndex");
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varint in SortedKeyIndex");
+        }
+    }
+
+    /**
+     * Streams entries, in strictly increasing key order, into a temporary sibling of the target file. {@link #finish()}
+     * writes the block index and moves the table into place, so readers never observe a partial table; closing a writer
+     * that was not finished discards it.
+     */
+    public static class Writer implements Closeable {
+
+        private final Path file;
+        private final Path tmp;
+        private final DataOutputStream out;
+        private final int blockEntries;
+        private int[] blockOffsets;
+        private int blockCount;
+        private long size;
+        private long position;
+        private byte[] previous;
+        private boolean closed;
+
+        private Writer(Path file, int blockEntries) throws IOException {
+            this.file = file;
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            this.tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16));
+            this.blockEntries = blockEntries;
+            this.blockOffsets = new int[16];
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            position = HEADER_SIZE;
+        }
+
+        public void add(byte[] key, byte[] value) throws IOException {
+            if (closed) throw new IllegalStateException("SortedKeyIndex writer is closed");
+            if (previous != null && Arrays.compareUnsigned(previous, key) >= 0) {
+                throw new IllegalArgumentException("Keys must be added in strictly increasing order");
+            }
+            int shared = 0;
+            if (size % blockEntries == 0) {
+                if (blockCount == blockOffsets.length) blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+                blockOffsets[blockCount++] = checkedPosition();
+            } else {
+                int mismatch = Arrays.mismatch(previous, key);
+                shared = Math.min(mismatch, Math.min(previous.length, key.length));
+            }
+            writeVarInt(shared);
+            writeVarInt(key.length - shared);
+            writeVarInt(value.length);
+            out.write(key, shared, key.length - shared);
+            out.write(value);
+            position += key.length - shared + value.length;
+            previous = key.clone();
+            size++;
+        }
+
+        public void finish() throws IOException {
+            if (closed) throw new IllegalStateException("SortedKeyIndex writer is closed");
+            int indexOffset = checkedPosition();
+            for (int i = 0; i < blockCount; i++) out.writeInt(blockOffsets[i]);
+            out.writeInt(blockCount);
+            out.writeLong(size);
+            out.writeInt(indexOffset);
+            out.writeInt(MAGIC);
+            position += 4L * blockCount + FOOTER_SIZE;
+            checkedPosition();
+            closed = true;
+            try {
+                out.close();
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                out.close();
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+
+        private int checkedPosition() {
+            if (position > Integer.MAX_VALUE) throw new IllegalStateException("SortedKeyIndex cannot exceed 2GB");
+            return (int) position;
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+                position++;
+            }
+            out.writeByte(value);
+            position++;
+        }
+    }
+}
@@ -30,7 +30,7 @@ public class Triple<FIRST, SECOND, THRID> {
         this.first = first;
         this.second = second;
         this.third = third;
-        this.hash = Objects.hash(this.first, this.second, this.third);
+        this.hash = Hashing.hashCode(this.first, this.second, this.third);
     }
 
     public FIRST first() {
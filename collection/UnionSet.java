@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A read-only view of the union of several sets. Membership is delegated to the parts, and iteration skips elements
+ * already returned by an earlier part, so nothing is copied. Computing the size requires a full iteration.
+ */
+class UnionSet<T> extends AbstractSet<T> {
+
+    private final List<Set<? extends T>> parts;
+
+    UnionSet(List<Set<? extends T>> parts) {
+        this.parts = parts;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        for (Set<? extends T> part : parts) {
+            if (part.contains(o)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (Set<? extends T> part : parts) {
+            if (!part.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (Iterator<T> iterator = iterator(); iterator.hasNext(); iterator.next()) size++;
+        return size;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+
+            private int part = 0;
+            private Iterator<? extends T> current = parts.isEmpty() ? null : parts.get(0).iterator();
+            private T next;
+            private boolean ready = false;
+
+            @Override
+            public boolean hasNext() {
+                if (ready) return true;
+                if (current == null) return false;
+                while (true) {
+                    while (current.hasNext()) {
+                        T candidate = current.next();
+                        if (!inEarlierPart(candidate)) {
+                            next = candidate;
+                            ready = true;
+                            return true;
+                        }
+                    }
+                    if (part + 1 >= parts.size()) return false;
+                    current = parts.get(++part).iterator();
+                }
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                return next;
+            }
+
+            private boolean inEarlierPart(T element) {
+                for (int i = 0; i < part; i++) {
+                    if (parts.get(i).contains(element)) return true;
+                }
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures the bytes allocated per call of an operation on the current thread, through the JVM's per-thread
+ * allocation counters. The operation is warmed up first, so that the measurement reflects compiled code, and its
+ * results are kept reachable, so that the compiler cannot remove the call.
+ */
+public class AllocationBudget {
+
+    private static final int WARMUP_CALLS = 200_000;
+    private static final int MEASURED_CALLS = 100_000;
+
+    private static volatile Object sink;
+
+    public static long bytesPerCall(Supplier<?> operation) {
+        com.sun.management.ThreadMXBean threads = threads();
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_CALLS; i++) sink = operation.get();
+        // the counter reads may themselves allocate, which is subtracted from the measurement
+        long overhead = -threads.getThreadAllocatedBytes(thread) + threads.getThreadAllocatedBytes(thread);
+        long start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_CALLS; i++) sink = operation.get();
+        long allocated = threads.getThreadAllocatedBytes(thread) - start - overhead;
+        return Math.max(0, allocated / MEASURED_CALLS);
+    }
+
+    public static void assertBudget(String operation, long budget, Supplier<?> call) {
+        long bytes = bytesPerCall(call);
+        assertTrue(operation + " allocated " + bytes + " bytes per call, over its budget of " + budget, bytes <= budget);
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean extended = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(extended.isThreadAllocatedMemorySupported());
+        if (!extended.isThreadAllocatedMemoryEnabled()) extended.setThreadAllocatedMemoryEnabled(true);
+        return extended;
+    }
+}
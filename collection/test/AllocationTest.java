@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.Bytes;
+import com.vaticle.typedb.common.collection.Collections;
+import com.vaticle.typedb.common.collection.ConcurrentSet;
+import com.vaticle.typedb.common.collection.Hashing;
+import com.vaticle.typedb.common.collection.Pair;
+import com.vaticle.typedb.common.collection.Permutations;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.vaticle.typedb.common.collection.test.AllocationBudget.assertBudget;
+
+/**
+ * Allocation budgets for hot-path utilities, in bytes per call. Budgets leave room for uncompressed object pointers,
+ * so that they hold on any 64-bit JVM, but fail when an operation starts allocating more than it needs.
+ */
+public class AllocationTest {
+
+    @Test
+    public void pair_allocates_only_itself() {
+        Integer first = 1, second = 2;
+        assertBudget("Pair construction", 32, () -> new Pair<>(first, second));
+    }
+
+    @Test
+    public void hasIntersection_allocates_at_most_an_iterator() {
+        Set<Integer> set1 = new HashSet<>(List.of(1, 2, 3, 4));
+        Set<Integer> set2 = new HashSet<>(List.of(5, 6, 7, 8, 9));
+        assertBudget("hasIntersection", 48, () -> Collections.hasIntersection(set1, set2));
+    }
+
+    @Test
+    public void sorted_hasIntersection_does_not_allocate() {
+        TreeSet<Integer> set1 = new TreeSet<>(List.of(1, 3, 5, 7));
+        TreeSet<Integer> set2 = new TreeSet<>(List.of(2, 4, 6, 8));
+        assertBudget("sorted hasIntersection", 0, () -> Collections.hasIntersection(set1, set2));
+    }
+
+    @Test
+    public void bytesToHexString_allocates_its_result_and_buffer() {
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) (i * 17);
+        assertBudget("bytesToHexString of 16 bytes", 320, () -> Bytes.bytesToHexString(bytes));
+    }
+
+    @Test
+    public void concurrentSet_contains_does_not_allocate() {
+        ConcurrentSet<Integer> set = new ConcurrentSet<>();
+        for (int i = 0; i < 100; i++) set.add(i);
+        Integer present = 42, absent = 420;
+        assertBudget("ConcurrentSet.contains", 0, () -> set.contains(present) && !set.contains(absent));
+    }
+
+    @Test
+    public void streaming_primitives_does_not_allocate() {
+        Hashing.Streaming streaming = Hashing.streaming();
+        assertBudget("Hashing.Streaming.putLong", 0, () -> streaming.putByte((byte) 1).putInt(2).putLong(3L));
+    }
+
+    @Test
+    public void permutations_allocate_one_list_per_permutation() {
+        Set<Integer> items = new HashSet<>(List.of(1, 2, 3, 4));
+        // 24 permutations of 4 items, plus the setup of the iterator
+        assertBudget("iterating the permutations of 4 items", 24 * 80 + 1024, () -> {
+            Iterator<List<Integer>> permutations = Permutations.permutations(items);
+            int count = 0;
+            while (permutations.hasNext()) {
+                permutations.next();
+                count++;
+            }
+            return count;
+        });
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.BloomFilter;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BloomFilterTest {
+
+    @Test
+    public void added_keys_are_always_found() {
+        BloomFilter filter = BloomFilter.create(10_000, 0.01);
+        for (long key = 0; key < 10_000; key++) {
+            filter.add(key);
+            filter.add("key-" + key);
+        }
+        for (long key = 0; key < 10_000; key++) {
+            assertTrue(filter.mightContain(key));
+            assertTrue(filter.mightContain("key-" + key));
+        }
+    }
+
+    @Test
+    public void false_positive_rate_is_near_its_target() {
+        for (double target : new double[]{0.1, 0.01, 0.001}) {
+            BloomFilter filter = BloomFilter.create(20_000, target);
+            for (long key = 0; key < 20_000; key++) filter.add(key);
+            int falsePositives = 0;
+            for (long key = 1_000_000; key < 1_200_000; key++) {
+                if (filter.mightContain(key)) falsePositives++;
+            }
+            double rate = falsePositives / 200_000.0;
+            assertTrue("false positive rate " + rate + " for target " + target, rate > target / 2 && rate < target * 2);
+            assertEquals(target, filter.expectedFalsePositiveRate(), target);
+        }
+    }
+
+    @Test
+    public void merged_filters_contain_the_keys_of_both() {
+        BloomFilter first = BloomFilter.create(1_000, 0.01);
+        BloomFilter second = BloomFilter.create(1_000, 0.01);
+        for (long key = 0; key < 500; key++) {
+            first.add(key);
+            second.add(key + 500);
+        }
+        first.merge(second);
+        for (long key = 0; key < 1_000; key++) assertTrue(first.mightContain(key));
+        try {
+            first.merge(BloomFilter.create(100_000, 0.01));
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void serialized_filters_are_restored() {
+        BloomFilter filter = BloomFilter.create(1_000, 0.01);
+        for (long key = 0; key < 1_000; key++) filter.add(key);
+        byte[] bytes = filter.toBytes();
+        for (boolean concurrent : new boolean[]{false, true}) {
+            BloomFilter restored = BloomFilter.fromBytes(bytes, concurrent);
+            assertArrayEquals(bytes, restored.toBytes());
+            for (long key = 0; key < 1_000; key++) assertTrue(restored.mightContain(key));
+        }
+    }
+
+    @Test
+    public void corrupt_bytes_are_rejected() {
+        byte[] bytes = BloomFilter.create(1_000, 0.01).toBytes();
+        List<byte[]> corrupt = new ArrayList<>();
+        corrupt.add(new byte[4]);
+        corrupt.add(Arrays.copyOf(bytes, bytes.length - 1));
+        corrupt.add(Arrays.copyOf(bytes, bytes.length + 8));
+        corrupt.add(ByteBuffer.allocate(8).putInt(3).putInt(0).array());
+        corrupt.add(ByteBuffer.allocate(16).putInt(0).putInt(1).putLong(-1).array());
+        corrupt.add(ByteBuffer.allocate(16).putInt(3).putInt(-1).putLong(-1).array());
+        for (byte[] bad : corrupt) {
+            try {
+                BloomFilter.fromBytes(bad);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void concurrent_additions_are_all_kept() throws InterruptedException {
+        BloomFilter filter = BloomFilter.concurrent(40_000, 0.01);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long from = t * 10_000L;
+            Thread thread = new Thread(() -> {
+                for (long key = from; key < from + 10_000; key++) filter.add(key);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) thread.join();
+        for (long key = 0; key < 40_000; key++) assertTrue(filter.mightContain(key));
+    }
+}
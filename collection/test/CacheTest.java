@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.Cache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CacheTest {
+
+    @Test
+    public void size_stays_within_maximum() {
+        Cache<Integer, Integer> cache = Cache.<Integer, Integer>builder().maximumSize(100).build();
+        for (int i = 0; i < 10_000; i++) cache.put(i, i);
+        assertEquals(100, cache.weightedSize());
+        assertEquals(100, cache.estimatedSize());
+    }
+
+    @Test
+    public void frequently_read_entries_survive_a_scan() {
+        Cache<Integer, Integer> cache = Cache.<Integer, Integer>builder().maximumSize(100).build();
+        for (int i = 0; i < 50; i++) cache.put(i, i);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 50; i++) cache.getIfPresent(i);
+        }
+        for (int i = 1_000; i < 10_000; i++) cache.put(i, i);
+        int survivors = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.getIfPresent(i) != null) survivors++;
+        }
+        assertTrue("only " + survivors + " popular entries survived", survivors >= 45);
+    }
+
+    @Test
+    public void concurrent_loads_of_a_key_share_one_load() throws Exception {
+        Cache<Integer, Integer> cache = Cache.<Integer, Integer>builder().maximumSize(100).build();
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get(1, key -> {
+                    loads.incrementAndGet();
+                    sleep(50);
+                    return 10;
+                })));
+            }
+            for (Future<Integer> result : results) assertEquals(Integer.valueOf(10), result.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().loadSuccesses());
+    }
+
+    @Test
+    public void recursive_load_of_the_same_key_fails() {
+        Cache<Integer, Integer> cache = Cache.<Integer, Integer>builder().maximumSize(100).build();
+        try {
+            cache.get(1, key -> cache.get(1, again -> 1));
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertNull(cache.getIfPresent(1));
+        assertEquals(Integer.valueOf(2), cache.get(1, key -> 2));
+    }
+
+    @Test
+    public void weights_follow_concurrent_updates() throws Exception {
+        Cache<Integer, String> cache = Cache.<Integer, String>builder()
+                .maximumWeight(1_000_000).weigher((key, value) -> value.length()).build();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                Random random = new Random(t);
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        int key = random.nextInt(50);
+                        if (random.nextInt(4) == 0) cache.put(key, "v".repeat(1 + random.nextInt(20)));
+                        else cache.getIfPresent(key);
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) worker.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        long weight = 0;
+        for (int key = 0; key < 50; key++) {
+            String value = cache.getIfPresent(key);
+            assertNotNull(value);
+            weight += value.length();
+        }
+        assertEquals(weight, cache.weightedSize());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.vaticle.typedb.common.collection.Collections.concatView;
+import static com.vaticle.typedb.common.collection.Collections.unionView;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CollectionViewTest {
+
+    @Test
+    public void concatView_indexes_across_part_boundaries() {
+        List<Integer> view = concatView(List.of(), List.of(0, 1), List.of(), List.of(), List.of(2), List.of(3, 4, 5),
+                                        List.of());
+        assertEquals(6, view.size());
+        for (int i = 0; i < view.size(); i++) assertEquals(Integer.valueOf(i), view.get(i));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), new ArrayList<>(view));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), view);
+        assertTrue(view.contains(4));
+        assertFalse(view.contains(6));
+        for (int index : new int[]{-1, 6}) {
+            try {
+                view.get(index);
+                fail();
+            } catch (IndexOutOfBoundsException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void concatView_of_empty_lists_is_empty() {
+        List<Integer> view = concatView(List.of(), List.of());
+        assertTrue(view.isEmpty());
+        assertFalse(view.iterator().hasNext());
+    }
+
+    @Test
+    public void unionView_iterates_each_element_once() {
+        Set<Integer> first = new LinkedHashSet<>(List.of(1, 2, 3));
+        Set<Integer> second = new LinkedHashSet<>(List.of(3, 4, 1));
+        Set<Integer> third = new LinkedHashSet<>(List.of(4, 5));
+        Set<Integer> view = unionView(first, Set.of(), second, third);
+        List<Integer> iterated = new ArrayList<>();
+        for (Integer element : view) iterated.add(element);
+        assertEquals(List.of(1, 2, 3, 4, 5), iterated);
+        assertEquals(5, view.size());
+        assertEquals(Set.of(1, 2, 3, 4, 5), view);
+        assertTrue(view.contains(5));
+        assertFalse(view.contains(6));
+    }
+
+    @Test
+    public void unionView_reflects_changes_to_its_parts() {
+        Set<Integer> first = new HashSet<>();
+        Set<Integer> second = new HashSet<>();
+        Set<Integer> view = unionView(first, second);
+        assertTrue(view.isEmpty());
+        second.add(1);
+        first.add(1);
+        assertFalse(view.isEmpty());
+        assertEquals(1, view.size());
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.ConcurrentMultimap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentMultimapTest {
+
+    @Test
+    public void a_key_collapses_back_to_a_single_value() {
+        ConcurrentMultimap<String, Integer> multimap = new ConcurrentMultimap<>();
+        assertTrue(multimap.put("key", 1));
+        assertFalse(multimap.put("key", 1));
+        assertEquals(Set.of(1), multimap.get("key"));
+        assertEquals(1, multimap.size());
+
+        assertTrue(multimap.put("key", 2));
+        assertTrue(multimap.put("key", 3));
+        assertEquals(Set.of(1, 2, 3), multimap.get("key"));
+        assertEquals(3, multimap.size());
+
+        assertTrue(multimap.remove("key", 3));
+        assertTrue(multimap.remove("key", 1));
+        assertFalse(multimap.remove("key", 1));
+        assertEquals(Set.of(2), multimap.get("key"));
+        assertTrue(multimap.contains("key", 2));
+        assertFalse(multimap.contains("key", 1));
+        assertEquals(1, multimap.size());
+
+        assertTrue(multimap.put("key", 4));
+        assertEquals(Set.of(2, 4), multimap.get("key"));
+        assertTrue(multimap.remove("key", 4));
+        assertTrue(multimap.remove("key", 2));
+        assertFalse(multimap.containsKey("key"));
+        assertTrue(multimap.get("key").isEmpty());
+        assertTrue(multimap.isEmpty());
+        assertEquals(0, multimap.keyCount());
+        assertEquals(0, multimap.size());
+    }
+
+    @Test
+    public void bulk_updates_count_only_new_values() {
+        ConcurrentMultimap<String, Integer> multimap = new ConcurrentMultimap<>();
+        assertFalse(multimap.putAll("key", List.of()));
+        assertFalse(multimap.containsKey("key"));
+        assertTrue(multimap.putAll("key", List.of(1, 2, 2, 3)));
+        assertFalse(multimap.putAll("key", List.of(3, 1)));
+        assertTrue(multimap.putAll("other", List.of(5, 5)));
+        assertEquals(4, multimap.size());
+        assertEquals(Set.of(5), multimap.get("other"));
+
+        assertEquals(Set.of(1, 2, 3), multimap.removeAll("key"));
+        assertTrue(multimap.removeAll("key").isEmpty());
+        assertEquals(1, multimap.size());
+        multimap.clear();
+        assertTrue(multimap.isEmpty());
+        assertEquals(0, multimap.size());
+    }
+
+    @Test
+    public void keys_are_removed_with_their_last_value_under_contention() throws InterruptedException {
+        ConcurrentMultimap<Integer, Integer> multimap = new ConcurrentMultimap<>();
+        AtomicInteger failures = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int owner = t;
+            Thread thread = new Thread(() -> {
+                for (int round = 0; round < 2_000; round++) {
+                    for (int key = 0; key < 8; key++) {
+                        if (!multimap.put(key, owner)) failures.incrementAndGet();
+                    }
+                    for (int key = 0; key < 8; key++) {
+                        if (!multimap.remove(key, owner)) failures.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(0, failures.get());
+        assertTrue(multimap.isEmpty());
+        assertEquals(0, multimap.keyCount());
+        assertEquals(0, multimap.size());
+    }
+
+    @Test
+    public void size_matches_contents_after_concurrent_updates() throws InterruptedException {
+        ConcurrentMultimap<Integer, Integer> multimap = new ConcurrentMultimap<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    int key = random.nextInt(16);
+                    int value = random.nextInt(4);
+                    switch (random.nextInt(5)) {
+                        case 0:
+                        case 1:
+                            multimap.put(key, value);
+                            break;
+                        case 2:
+                            multimap.putAll(key, List.of(value, (value + 1) % 4));
+                            break;
+                        case 3:
+                            multimap.remove(key, value);
+                            break;
+                        default:
+                            if (value == 0) multimap.removeAll(key);
+                            else multimap.remove(key, value);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) thread.join();
+
+        Set<List<Integer>> pairs = new HashSet<>();
+        multimap.forEach((key, value) -> pairs.add(List.of(key, value)));
+        long values = 0;
+        for (Integer key : multimap.keySet()) {
+            Set<Integer> keyValues = multimap.get(key);
+            assertFalse(keyValues.isEmpty());
+            values += keyValues.size();
+        }
+        assertEquals(values, multimap.size());
+        assertEquals(pairs.size(), multimap.size());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.CountMinSketch;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CountMinSketchTest {
+
+    @Test
+    public void estimates_never_fall_below_counts_and_rarely_exceed_the_error() {
+        for (double error : new double[]{0.01, 0.001}) {
+            CountMinSketch sketch = CountMinSketch.create(error, 0.99);
+            long[] counts = new long[2_000];
+            long total = 0;
+            for (int key = 0; key < counts.length; key++) {
+                // a skewed distribution, with a few heavy keys and a long tail
+                counts[key] = 10_000 / (key + 1) + 1;
+                sketch.add((long) key, counts[key]);
+                total += counts[key];
+            }
+            assertEquals(total, sketch.totalCount());
+            int overestimates = 0;
+            for (int key = 0; key < counts.length; key++) {
+                long estimate = sketch.estimate((long) key);
+                assertTrue(estimate >= counts[key]);
+                if (estimate > counts[key] + error * total) overestimates++;
+            }
+            assertTrue("error " + error + ": " + overestimates + " overestimates", overestimates <= counts.length / 50);
+        }
+    }
+
+    @Test
+    public void object_keys_are_counted_by_equality() {
+        CountMinSketch sketch = CountMinSketch.create(0.001, 0.99);
+        for (int i = 0; i < 1_000; i++) sketch.add("key-" + (i % 10));
+        sketch.add("heavy", 500);
+        assertEquals(100, sketch.estimate("key-3"));
+        assertEquals(500, sketch.estimate("heavy"));
+        assertEquals(0, sketch.estimate("absent"));
+        assertEquals(1_500, sketch.totalCount());
+    }
+
+    @Test
+    public void inner_product_and_merge_never_underestimate() {
+        CountMinSketch first = CountMinSketch.create(0.001, 0.99), second = CountMinSketch.create(0.001, 0.99);
+        long product = 0;
+        for (long key = 0; key < 500; key++) {
+            first.add(key, key % 7 + 1);
+            second.add(key + 250, key % 5 + 1);
+        }
+        for (long key = 250; key < 500; key++) product += (key % 7 + 1) * ((key - 250) % 5 + 1);
+        long estimate = first.innerProduct(second);
+        assertTrue(estimate >= product);
+        assertTrue(estimate <= product + 0.001 * first.totalCount() * second.totalCount());
+        assertEquals(0, first.innerProduct(CountMinSketch.create(0.001, 0.99)));
+
+        long total = first.totalCount() + second.totalCount();
+        first.merge(second);
+        assertEquals(total, first.totalCount());
+        assertEquals(251 % 7 + 1 + 1 % 5 + 1, first.estimate(251L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sketches_of_different_dimensions_do_not_combine() {
+        CountMinSketch.create(0.01, 0.99).merge(CountMinSketch.create(0.001, 0.99));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negative_counts_are_rejected() {
+        CountMinSketch.create(0.01, 0.99).add(1L, -1);
+    }
+
+    @Test
+    public void sketches_round_trip_through_bytes() {
+        CountMinSketch sketch = CountMinSketch.create(0.01, 0.999);
+        for (long key = 0; key < 5_000; key++) sketch.add(key, key % 13);
+        byte[] bytes = sketch.toBytes();
+        for (boolean concurrent : new boolean[]{false, true}) {
+            CountMinSketch decoded = CountMinSketch.fromBytes(bytes, concurrent);
+            assertArrayEquals(bytes, decoded.toBytes());
+            assertEquals(sketch.totalCount(), decoded.totalCount());
+            for (long key = 0; key < 100; key++) assertEquals(sketch.estimate(key), decoded.estimate(key));
+            decoded.add(-1L, 3);
+            assertEquals(sketch.estimate(-1L) + 3, decoded.estimate(-1L));
+        }
+    }
+
+    @Test
+    public void corrupt_bytes_are_rejected() {
+        byte[] valid = CountMinSketch.create(0.1, 0.9).toBytes();
+        assertRejected(new byte[0]);
+        assertRejected(new byte[Integer.BYTES * 2 - 1]);
+        assertRejected(Arrays.copyOf(valid, valid.length - 1));
+        assertRejected(Arrays.copyOf(valid, valid.length + Long.BYTES));
+        assertRejected(withHeader(valid, 0, 32));
+        assertRejected(withHeader(valid, 1, 1));
+        assertRejected(withHeader(valid, 1, 24));
+        assertRejected(withHeader(valid, Integer.MAX_VALUE, 1 << 30));
+    }
+
+    @Test
+    public void concurrent_updates_match_sequential_ones() throws InterruptedException {
+        CountMinSketch sequential = CountMinSketch.create(0.01, 0.99);
+        CountMinSketch concurrent = CountMinSketch.concurrent(0.01, 0.99);
+        for (int t = 0; t < 4; t++) {
+            for (long key = 0; key < 50_000; key++) sequential.add(key % 1_000, t + 1);
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long count = t + 1;
+            Thread thread = new Thread(() -> {
+                for (long key = 0; key < 50_000; key++) concurrent.add(key % 1_000, count);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) thread.join();
+        assertArrayEquals(sequential.toBytes(), concurrent.toBytes());
+        assertEquals(500_000, concurrent.totalCount());
+    }
+
+    private static byte[] withHeader(byte[] bytes, int depth, int width) {
+        byte[] copy = bytes.clone();
+        ByteBuffer.wrap(copy).putInt(depth).putInt(width);
+        return copy;
+    }
+
+    private static void assertRejected(byte[] bytes) {
+        for (boolean concurrent : new boolean[]{false, true}) {
+            try {
+                CountMinSketch.fromBytes(bytes, concurrent);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
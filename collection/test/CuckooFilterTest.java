@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.CuckooFilter;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CuckooFilterTest {
+
+    @Test
+    public void added_keys_are_found_until_removed() {
+        CuckooFilter filter = CuckooFilter.create(10_000);
+        for (long key = 0; key < 10_000; key++) assertTrue(filter.add(key));
+        assertEquals(10_000, filter.size());
+        for (long key = 0; key < 10_000; key += 2) assertTrue(filter.remove(key));
+        assertEquals(5_000, filter.size());
+        for (long key = 1; key < 10_000; key += 2) assertTrue(filter.mightContain(key));
+        int stillFound = 0;
+        for (long key = 0; key < 10_000; key += 2) {
+            if (filter.mightContain(key)) stillFound++;
+        }
+        assertTrue(stillFound < 10);
+        assertTrue(filter.add("key"));
+        assertTrue(filter.mightContain("key"));
+        assertTrue(filter.remove("key"));
+    }
+
+    @Test
+    public void false_positive_rate_is_near_its_bound() {
+        CuckooFilter filter = CuckooFilter.create(20_000);
+        for (long key = 0; key < 20_000; key++) filter.add(key);
+        int falsePositives = 0;
+        for (long key = 1_000_000; key < 2_000_000; key++) {
+            if (filter.mightContain(key)) falsePositives++;
+        }
+        // at most 8 fingerprints are compared per lookup, each matching with probability 1 / 2^16
+        assertTrue("false positive rate " + falsePositives / 1e6, falsePositives < 1_000_000 * 8 / 65536);
+    }
+
+    @Test
+    public void a_full_filter_keeps_its_victim() {
+        CuckooFilter filter = CuckooFilter.create(8);
+        List<Long> added = new ArrayList<>();
+        for (long key = 0; !filter.isFull(); key++) {
+            assertTrue(filter.add(key));
+            added.add(key);
+        }
+        assertEquals(added.size(), filter.size());
+        assertFalse(filter.add(-1L));
+        for (long key : added) assertTrue(filter.mightContain(key));
+
+        CuckooFilter restored = CuckooFilter.fromBytes(filter.toBytes());
+        assertTrue(restored.isFull());
+        for (long key : added) assertTrue(restored.mightContain(key));
+
+        // removing any key makes room for the victim
+        assertTrue(filter.remove(added.get(0)));
+        assertFalse(filter.isFull());
+        assertEquals(added.size() - 1, filter.size());
+        for (long key : added.subList(1, added.size())) assertTrue(filter.mightContain(key));
+    }
+
+    @Test
+    public void merged_filters_contain_the_keys_of_both() {
+        CuckooFilter first = CuckooFilter.create(1_000);
+        CuckooFilter second = CuckooFilter.create(1_000);
+        for (long key = 0; key < 500; key++) {
+            first.add(key);
+            second.add(key + 500);
+        }
+        assertTrue(first.merge(second));
+        assertEquals(1_000, first.size());
+        for (long key = 0; key < 1_000; key++) assertTrue(first.mightContain(key));
+        try {
+            first.merge(CuckooFilter.create(100_000));
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void serialized_filters_are_restored() {
+        CuckooFilter filter = CuckooFilter.create(1_000);
+        for (long key = 0; key < 1_000; key++) filter.add(key);
+        byte[] bytes = filter.toBytes();
+        for (boolean concurrent : new boolean[]{false, true}) {
+            CuckooFilter restored = CuckooFilter.fromBytes(bytes, concurrent);
+            assertArrayEquals(bytes, restored.toBytes());
+            assertEquals(1_000, restored.size());
+            for (long key = 0; key < 1_000; key++) assertTrue(restored.mightContain(key));
+        }
+    }
+
+    @Test
+    public void corrupt_bytes_are_rejected() {
+        byte[] bytes = CuckooFilter.create(1_000).toBytes();
+        List<byte[]> corrupt = new ArrayList<>();
+        corrupt.add(new byte[8]);
+        corrupt.add(Arrays.copyOf(bytes, bytes.length - 1));
+        corrupt.add(Arrays.copyOf(bytes, bytes.length + 2));
+        corrupt.add(serialized(-4, 0, 0));
+        corrupt.add(serialized(0, 0, 0));
+        corrupt.add(serialized(6, 0, 0));
+        corrupt.add(serialized(12, 0, 0));
+        corrupt.add(serialized(8, 0, 2));
+        corrupt.add(serialized(8, -1, 0));
+        corrupt.add(serialized(8, 10, 0));
+        for (byte[] bad : corrupt) {
+            try {
+                CuckooFilter.fromBytes(bad);
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        assertEquals(9, CuckooFilter.fromBytes(serialized(8, 9, 1)).size());
+    }
+
+    @Test
+    public void concurrent_updates_never_lose_other_keys() throws InterruptedException {
+        // filled to nearly 90% of the table, so that insertions regularly relocate fingerprints
+        int stable = 52_000, churn = 6_000;
+        CuckooFilter filter = CuckooFilter.concurrent(40_000);
+        for (long key = 0; key < stable; key++) assertTrue(filter.add(key));
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong missing = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            long from = stable + (long) t * churn / 2;
+            threads.add(new Thread(() -> {
+                for (int round = 0; round < 20; round++) {
+                    for (long key = from; key < from + churn / 2; key++) filter.add(key);
+                    for (long key = from; key < from + churn / 2; key++) filter.remove(key);
+                }
+            }));
+        }
+        for (int t = 0; t < 2; t++) {
+            threads.add(new Thread(() -> {
+                while (running.get()) {
+                    for (long key = 0; key < stable; key++) {
+                        if (!filter.mightContain(key)) missing.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads.subList(0, 2)) thread.join();
+        running.set(false);
+        for (Thread thread : threads.subList(2, 4)) thread.join();
+        assertEquals(0, missing.get());
+        assertEquals(stable, filter.size());
+        assertFalse(filter.isFull());
+        for (long key = 0; key < stable; key++) assertTrue(filter.mightContain(key));
+    }
+
+    private static byte[] serialized(int slots, int size, int victimIndex) {
+        ByteBuffer buffer = ByteBuffer.allocate(14 + Math.max(0, slots) * 2);
+        return buffer.putInt(slots).putInt(size).putShort((short) 0).putInt(victimIndex).array();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.Hashing;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+public class HashingTest {
+
+    // the test vectors of the reference wyhash implementation, with the seed of each vector being its index
+    private static final String[] VECTOR_INPUTS = {
+            "", "a", "abc", "message digest", "abcdefghijklmnopqrstuvwxyz",
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789",
+            "12345678901234567890123456789012345678901234567890123456789012345678901234567890"
+    };
+    private static final long[] VECTOR_HASHES = {
+            0x93228a4de0eec5a2L, 0xc5bac3db178713c4L, 0xa97f2f7b1d9b3314L, 0x786d1f1df3801df4L,
+            0xdca5a8138ad37c87L, 0xb9e734f117cfaf70L, 0x6cc5eab49a92d617L
+    };
+
+    @Test
+    public void bytes_match_reference_vectors() {
+        for (int i = 0; i < VECTOR_INPUTS.length; i++) {
+            assertEquals(VECTOR_INPUTS[i], VECTOR_HASHES[i], Hashing.hash(VECTOR_INPUTS[i].getBytes(UTF_8), i));
+        }
+    }
+
+    @Test
+    public void buffers_and_streaming_match_arrays() {
+        Random random = new Random(0);
+        for (int length = 0; length < 300; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            long expected = Hashing.hash(bytes, length);
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(length + 3);
+            direct.position(3);
+            direct.put(bytes).position(3);
+            assertEquals(expected, Hashing.hash(direct, length));
+            assertEquals(3, direct.position());
+            assertEquals(expected, Hashing.hash(ByteBuffer.wrap(bytes).asReadOnlyBuffer(), length));
+
+            Hashing.Streaming streaming = Hashing.streaming(length);
+            for (int offset = 0; offset < length; offset += 7) {
+                streaming.update(bytes, offset, Math.min(7, length - offset));
+            }
+            assertEquals(expected, streaming.digest());
+        }
+    }
+
+    @Test
+    public void streamed_primitives_match_their_little_endian_bytes() {
+        Random random = new Random(1);
+        for (int count = 0; count < 40; count++) {
+            ByteBuffer bytes = ByteBuffer.allocate(count * (1 + Integer.BYTES + Long.BYTES + Double.BYTES))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            Hashing.Streaming streaming = Hashing.streaming(count);
+            for (int i = 0; i < count; i++) {
+                byte b = (byte) random.nextInt();
+                int n = random.nextInt();
+                long l = random.nextLong();
+                double d = random.nextDouble();
+                bytes.put(b).putInt(n).putLong(l).putDouble(d);
+                streaming.putByte(b).putInt(n).putLong(l).putDouble(d);
+            }
+            assertEquals(Hashing.hash(bytes.array(), count), streaming.digest());
+        }
+    }
+
+    @Test
+    public void offsets_hash_only_the_range() {
+        byte[] bytes = "xxabcxx".getBytes(UTF_8);
+        assertEquals(Hashing.hash("abc".getBytes(UTF_8), 2), Hashing.hash(bytes, 2, 3, 2));
+    }
+}
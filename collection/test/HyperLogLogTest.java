@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.HyperLogLog;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void estimates_are_within_the_expected_error() {
+        for (int precision : new int[]{HyperLogLog.MIN_PRECISION, 10, 14}) {
+            double tolerance = 4 * 1.04 / Math.sqrt(1 << precision);
+            for (int count : new int[]{10, 1_000, 100_000}) {
+                HyperLogLog sketch = HyperLogLog.create(precision);
+                for (long key = 0; key < count; key++) {
+                    sketch.add(key);
+                    sketch.add(key);
+                }
+                double error = Math.abs(sketch.cardinality() - count) / (double) count;
+                assertTrue("precision " + precision + ", count " + count + ": error " + error, error <= tolerance);
+            }
+        }
+        assertEquals(0, HyperLogLog.create(10).cardinality());
+    }
+
+    @Test
+    public void object_keys_are_counted_by_equality() {
+        HyperLogLog sketch = HyperLogLog.create(12);
+        for (int i = 0; i < 10_000; i++) sketch.add("key-" + (i % 100));
+        assertEquals(100, sketch.cardinality(), 3);
+    }
+
+    @Test
+    public void union_and_intersection_follow_the_overlap() {
+        HyperLogLog first = HyperLogLog.create(14), second = HyperLogLog.create(14);
+        for (long key = 0; key < 60_000; key++) first.add(key);
+        for (long key = 30_000; key < 90_000; key++) second.add(key);
+        assertEquals(90_000, first.union(second).cardinality(), 90_000 * 0.05);
+        assertEquals(30_000, first.intersectionCardinality(second), 30_000 * 0.15);
+        assertEquals(60_000, first.cardinality(), 60_000 * 0.05);
+
+        HyperLogLog disjoint = HyperLogLog.create(14);
+        for (long key = 1_000_000; key < 1_001_000; key++) disjoint.add(key);
+        assertTrue(first.intersectionCardinality(disjoint) <= 1_000);
+        assertEquals(first.cardinality(), first.intersectionCardinality(first));
+
+        first.merge(second);
+        assertEquals(first.cardinality(), first.union(second).cardinality());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sketches_of_different_precisions_do_not_combine() {
+        HyperLogLog.create(10).merge(HyperLogLog.create(11));
+    }
+
+    @Test
+    public void sketches_round_trip_through_bytes() {
+        for (int precision : new int[]{HyperLogLog.MIN_PRECISION, 7, 13, HyperLogLog.MAX_PRECISION}) {
+            HyperLogLog sketch = HyperLogLog.create(precision);
+            for (long key = 0; key < 5_000; key++) sketch.add(key * 31);
+            byte[] bytes = sketch.toBytes();
+            long cardinality = sketch.cardinality();
+            sketch.add(-1L);
+            for (boolean concurrent : new boolean[]{false, true}) {
+                HyperLogLog decoded = HyperLogLog.fromBytes(bytes, concurrent);
+                assertEquals(precision, decoded.precision());
+                assertEquals(cardinality, decoded.cardinality());
+                assertArrayEquals(bytes, decoded.toBytes());
+                decoded.add(-1L);
+                assertArrayEquals(sketch.toBytes(), decoded.toBytes());
+            }
+        }
+    }
+
+    @Test
+    public void corrupt_bytes_are_rejected() {
+        byte[] valid = HyperLogLog.create(4).toBytes();
+        assertRejected(new byte[0]);
+        assertRejected(withPrecision(valid, 3));
+        assertRejected(withPrecision(valid, 19));
+        assertRejected(Arrays.copyOf(valid, valid.length - 1));
+        assertRejected(Arrays.copyOf(valid, valid.length + 1));
+        // a register holds at most 65 - precision, while 6 bits could hold up to 63
+        assertRejected(withFirstRegister(valid, 62));
+        assertRejected(withFirstRegister(valid, 63));
+        HyperLogLog highest = HyperLogLog.fromBytes(withFirstRegister(valid, 61));
+        assertTrue(highest.cardinality() >= 0);
+    }
+
+    @Test
+    public void concurrent_updates_match_sequential_ones() throws InterruptedException {
+        HyperLogLog sequential = HyperLogLog.create(12);
+        HyperLogLog concurrent = HyperLogLog.concurrent(12);
+        for (long key = 0; key < 200_000; key++) sequential.add(key);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            Thread thread = new Thread(() -> {
+                // the threads overlap, so that they race on the same registers
+                for (long key = offset * 40_000L; key < offset * 40_000L + 80_000; key++) concurrent.add(key);
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) thread.join();
+        assertArrayEquals(sequential.toBytes(), concurrent.toBytes());
+        assertEquals(sequential.cardinality(), concurrent.cardinality());
+    }
+
+    private static byte[] withPrecision(byte[] bytes, int precision) {
+        byte[] copy = bytes.clone();
+        copy[0] = (byte) precision;
+        return copy;
+    }
+
+    private static byte[] withFirstRegister(byte[] bytes, int value) {
+        byte[] copy = bytes.clone();
+        copy[1] = (byte) (value << 2);
+        return copy;
+    }
+
+    private static void assertRejected(byte[] bytes) {
+        for (boolean concurrent : new boolean[]{false, true}) {
+            try {
+                HyperLogLog.fromBytes(bytes, concurrent);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
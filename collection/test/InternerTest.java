@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.Interner;
+import com.vaticle.typedb.common.collection.Pair;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.vaticle.typedb.common.collection.Collections.internedPair;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class InternerTest {
+
+    @Test
+    public void equal_values_share_one_instance() {
+        Interner<String> interner = new Interner<>();
+        String first = new String("label");
+        String second = new String("label");
+        assertNotSame(first, second);
+        assertSame(first, interner.intern(first));
+        assertSame(first, interner.intern(second));
+        assertEquals(1, interner.size());
+
+        Pair<String, Integer> pair = internedPair("label", 1);
+        assertSame(pair, internedPair(new String("label"), 1));
+    }
+
+    @Test
+    public void unreferenced_values_are_purged_after_gc() throws InterruptedException {
+        Interner<String> interner = new Interner<>();
+        String kept = interner.intern(new String("kept"));
+        for (int i = 0; i < 1_000; i++) interner.intern(new String("value-" + i));
+        for (int attempt = 0; attempt < 50 && interner.size() > 1; attempt++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, interner.size());
+        assertSame(kept, interner.intern(new String("kept")));
+        String value = new String("value-0");
+        assertSame(value, interner.intern(value));
+    }
+
+    @Test
+    public void concurrent_interning_agrees_on_one_instance() throws InterruptedException {
+        Interner<String> interner = new Interner<>();
+        String[][] interned = new String[4][100];
+        AtomicInteger mismatches = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < interned.length; t++) {
+            String[] results = interned[t];
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    String value = interner.intern(new String("value-" + (i % 100)));
+                    if (results[i % 100] == null) results[i % 100] = value;
+                    else if (results[i % 100] != value) mismatches.incrementAndGet();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(0, mismatches.get());
+        assertEquals(100, interner.size());
+        for (String[] results : interned) {
+            for (int i = 0; i < 100; i++) assertSame(interned[0][i], results[i]);
+        }
+    }
+}
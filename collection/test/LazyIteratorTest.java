@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.LazyIterator;
+import com.vaticle.typedb.common.collection.LongIterator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class LazyIteratorTest {
+
+    @Test
+    public void mergeSorted_merges_in_order() {
+        Random random = new Random(0);
+        List<Iterator<Integer>> sources = new ArrayList<>();
+        List<Integer> expected = new ArrayList<>();
+        for (int s = 0; s < 8; s++) {
+            List<Integer> source = new ArrayList<>();
+            for (int i = random.nextInt(50); i > 0; i--) source.add(random.nextInt(100));
+            source.sort(Comparator.reverseOrder());
+            expected.addAll(source);
+            sources.add(source.iterator());
+        }
+        sources.add(java.util.Collections.emptyIterator());
+        expected.sort(Comparator.reverseOrder());
+        assertEquals(expected, LazyIterator.mergeSorted(Comparator.<Integer>reverseOrder(), sources).toList());
+        assertEquals(List.of(1, 2, 2, 3), LazyIterator.mergeSorted(Comparator.<Integer>naturalOrder(),
+                List.of(2, 3).iterator(), List.of(1, 2).iterator()).toList());
+        assertFalse(LazyIterator.<Integer>mergeSorted(Comparator.naturalOrder()).hasNext());
+    }
+
+    @Test
+    public void stages_compose_lazily() {
+        List<Integer> pulled = new ArrayList<>();
+        LazyIterator<String> iterator = LazyIterator.iterate(1, 2, 3, 4, 5, 6, 2)
+                .map(i -> {
+                    pulled.add(i);
+                    return i;
+                })
+                .filter(i -> i % 2 == 0)
+                .distinct()
+                .flatMap(i -> List.of(i, -i).iterator())
+                .map(String::valueOf)
+                .limit(3);
+        assertEquals(List.of(), pulled);
+        assertEquals(List.of("2", "-2", "4"), iterator.toList());
+        assertEquals(List.of(1, 2, 3, 4), pulled);
+    }
+
+    @Test
+    public void close_hooks_run_once_through_every_stage() {
+        List<String> closed = new ArrayList<>();
+        Closeable<Integer> source = new Closeable<>(List.of(1, 2, 3, 4).iterator(), closed, "source");
+        LazyIterator<Integer> iterator = LazyIterator.iterate(source).onClose(() -> closed.add("iterate"))
+                .map(i -> i * 10).onClose(() -> closed.add("map"))
+                .filter(i -> i > 10).onClose(() -> closed.add("filter"));
+        assertEquals(Integer.valueOf(20), iterator.next());
+        assertEquals(List.of(), closed);
+        iterator.close();
+        iterator.close();
+        assertEquals(List.of("source", "iterate", "map", "filter"), closed);
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    public void exhausted_and_limited_iterators_close_themselves() {
+        List<String> closed = new ArrayList<>();
+        LazyIterator<Integer> exhausted = LazyIterator.iterate(new Closeable<>(List.of(1).iterator(), closed, "exhausted"));
+        assertEquals(1, exhausted.count());
+        LazyIterator.iterate(new Closeable<>(List.of(1, 2, 3).iterator(), closed, "limited")).limit(1).toList();
+        LazyIterator.iterate(1, 2).flatMap(i -> new Closeable<>(List.of(i).iterator(), closed, "inner-" + i)).toList();
+        assertEquals(Integer.valueOf(1), LazyIterator.iterate(new Closeable<>(List.of(1, 2).iterator(), closed, "first"))
+                .first().get());
+        assertEquals(List.of("exhausted", "limited", "inner-1", "inner-2", "first"), closed);
+    }
+
+    @Test
+    public void long_stages_close_their_object_sources() {
+        List<String> closed = new ArrayList<>();
+        LongIterator longs = LazyIterator.iterate(new Closeable<>(List.of("a", "bb", "ccc").iterator(), closed, "source"))
+                .mapToLong(String::length).onClose(() -> closed.add("mapToLong"))
+                .map(l -> l * 2)
+                .filter(l -> l > 2);
+        assertArrayEquals(new long[]{4, 6}, longs.toArray());
+        assertEquals(List.of("source", "mapToLong"), closed);
+        assertEquals(9, LongIterator.range(0, 10).filter(l -> l % 2 == 1).limit(3).sum());
+        assertEquals(List.of("1", "2"), LongIterator.iterate(1, 2).mapToObj(String::valueOf).toList());
+    }
+
+    private static class Closeable<T> implements Iterator<T>, AutoCloseable {
+
+        private final Iterator<T> iterator;
+        private final List<String> closed;
+        private final String name;
+
+        private Closeable(Iterator<T> iterator, List<String> closed, String name) {
+            this.iterator = iterator;
+            this.closed = closed;
+            this.name = name;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return iterator.next();
+        }
+
+        @Override
+        public void close() {
+            closed.add(name);
+        }
+    }
+}
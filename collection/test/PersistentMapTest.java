@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.PersistentMap;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PersistentMapTest {
+
+    @Test
+    public void updates_leave_earlier_versions_unchanged() {
+        PersistentMap<String, Integer> empty = PersistentMap.empty();
+        PersistentMap<String, Integer> one = empty.plus("a", 1);
+        PersistentMap<String, Integer> two = one.plus("b", 2);
+        PersistentMap<String, Integer> replaced = two.plus("a", 3);
+        PersistentMap<String, Integer> removed = replaced.minus("b");
+
+        assertTrue(empty.isEmpty());
+        assertEquals(Map.of("a", 1), one);
+        assertEquals(Map.of("a", 1, "b", 2), two);
+        assertEquals(Map.of("a", 3, "b", 2), replaced);
+        assertEquals(Map.of("a", 3), removed);
+        assertSame(removed, removed.minus("missing"));
+    }
+
+    // keys which collide on their hash code share a collision node
+    @Test
+    public void colliding_keys_are_kept_apart() {
+        PersistentMap<Key, Integer> map = PersistentMap.empty();
+        for (int i = 0; i < 10; i++) map = map.plus(new Key(i), i);
+        assertEquals(10, map.size());
+        for (int i = 0; i < 10; i++) assertEquals(Integer.valueOf(i), map.get(new Key(i)));
+        map = map.minus(new Key(3));
+        assertFalse(map.containsKey(new Key(3)));
+        assertNull(map.get(new Key(3)));
+        assertEquals(9, map.size());
+    }
+
+    @Test
+    public void random_operations_match_hashMap() {
+        Random random = new Random(0);
+        PersistentMap<Integer, Integer> map = PersistentMap.empty();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                map = map.minus(key);
+                expected.remove(key);
+            } else {
+                map = map.plus(key, i);
+                expected.put(key, i);
+            }
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected.get(key), map.get(key));
+        }
+        assertEquals(expected, map);
+        assertEquals(expected, new HashMap<>(map));
+        assertEquals(expected.hashCode(), map.hashCode());
+    }
+
+    private static class Key {
+
+        private final int id;
+
+        private Key(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 42;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.Int2IntMap;
+import com.vaticle.typedb.common.collection.IntSet;
+import com.vaticle.typedb.common.collection.Long2LongMap;
+import com.vaticle.typedb.common.collection.Long2ObjectMap;
+import com.vaticle.typedb.common.collection.LongSet;
+import com.vaticle.typedb.common.collection.Object2LongMap;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks each primitive map and set against its boxed java.util counterpart, through random operations over a small
+ * key range, so that keys are often reinserted and removed, and the zero key is exercised.
+ */
+public class PrimitiveMapTest {
+
+    private static final int OPERATIONS = 200_000;
+    private static final int KEYS = 2_000;
+
+    @Test
+    public void long2ObjectMap_matches_hashMap() {
+        Random random = new Random(0);
+        Long2ObjectMap<String> map = new Long2ObjectMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            long key = random.nextInt(KEYS) - KEYS / 2;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                String value = Integer.toString(i);
+                assertEquals(!expected.containsKey(key), map.put(key, value));
+                expected.put(key, value);
+            }
+            assertEquals(expected.get(key), map.get(key));
+        }
+        Map<Long, String> iterated = new HashMap<>();
+        Long2ObjectMap<String>.Cursor cursor = map.cursor();
+        while (cursor.advance()) iterated.put(cursor.key(), cursor.value());
+        assertEquals(expected, iterated);
+    }
+
+    @Test
+    public void long2LongMap_matches_hashMap() {
+        Random random = new Random(1);
+        Long2LongMap map = new Long2LongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            long key = random.nextInt(KEYS) - KEYS / 2;
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else if (operation == 1) {
+                map.put(key, i);
+                expected.put(key, (long) i);
+            } else {
+                assertEquals((long) expected.merge(key, 3L, Long::sum), map.addTo(key, 3));
+            }
+            assertEquals((long) expected.getOrDefault(key, -1L), map.getOrDefault(key, -1));
+        }
+        assertEquals(expected.size(), map.size());
+    }
+
+    @Test
+    public void int2IntMap_matches_hashMap() {
+        Random random = new Random(2);
+        Int2IntMap map = new Int2IntMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(KEYS) - KEYS / 2;
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else if (operation == 1) {
+                map.put(key, i);
+                expected.put(key, i);
+            } else {
+                assertEquals((int) expected.merge(key, 3, Integer::sum), map.addTo(key, 3));
+            }
+            assertEquals((int) expected.getOrDefault(key, -1), map.getOrDefault(key, -1));
+        }
+        assertEquals(expected.size(), map.size());
+    }
+
+    @Test
+    public void object2LongMap_matches_hashMap() {
+        Random random = new Random(3);
+        Object2LongMap<String> map = new Object2LongMap<>();
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            String key = Integer.toString(random.nextInt(KEYS));
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else if (operation == 1) {
+                map.put(key, i);
+                expected.put(key, (long) i);
+            } else {
+                assertEquals((long) expected.merge(key, 3L, Long::sum), map.addTo(key, 3));
+            }
+            assertEquals((long) expected.getOrDefault(key, -1L), map.getOrDefault(key, -1));
+        }
+        assertEquals(expected.size(), map.size());
+    }
+
+    @Test
+    public void longSet_and_intSet_match_hashSet() {
+        Random random = new Random(4);
+        LongSet longs = new LongSet();
+        IntSet ints = new IntSet();
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int key = random.nextInt(KEYS) - KEYS / 2;
+            if (random.nextInt(3) == 0) {
+                boolean removed = expected.remove(key);
+                assertEquals(removed, longs.remove(key));
+                assertEquals(removed, ints.remove(key));
+            } else {
+                boolean added = expected.add(key);
+                assertEquals(added, longs.add(key));
+                assertEquals(added, ints.add(key));
+            }
+            assertEquals(expected.contains(key), longs.contains(key));
+            assertEquals(expected.contains(key), ints.contains(key));
+        }
+        assertEquals(expected.size(), longs.size());
+        assertEquals(expected.size(), ints.size());
+    }
+}
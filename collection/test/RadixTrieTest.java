@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.Pair;
+import com.vaticle.typedb.common.collection.RadixTrie;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RadixTrieTest {
+
+    private static final RadixTrie<Integer> TRIE = RadixTrie.of(Map.of(
+            "team", 1, "tea", 2, "teapot", 3, "ten", 4, "to", 5, "", 6
+    ));
+
+    @Test
+    public void get_finds_only_exact_keys() {
+        assertEquals(6, TRIE.size());
+        assertEquals(Integer.valueOf(1), TRIE.get("team"));
+        assertEquals(Integer.valueOf(2), TRIE.get("tea"));
+        assertEquals(Integer.valueOf(3), TRIE.get("teapot"));
+        assertEquals(Integer.valueOf(6), TRIE.get(""));
+        assertNull(TRIE.get("te"));
+        assertNull(TRIE.get("teap"));
+        assertNull(TRIE.get("teams"));
+        assertNull(TRIE.get("x"));
+        assertTrue(TRIE.containsKey("to"));
+        assertFalse(TRIE.containsKey("t"));
+    }
+
+    @Test
+    public void prefixes_may_end_partway_along_an_edge() {
+        assertEquals(List.of("tea=2", "team=1", "teapot=3"), entries(TRIE.prefix("tea")));
+        assertEquals(List.of("teapot=3"), entries(TRIE.prefix("teap")));
+        assertEquals(List.of("teapot=3"), entries(TRIE.prefix("teapo")));
+        assertEquals(List.of("tea=2", "team=1", "teapot=3", "ten=4"), entries(TRIE.prefix("te")));
+        assertEquals(List.of(), entries(TRIE.prefix("teapots")));
+        assertEquals(List.of(), entries(TRIE.prefix("tex")));
+        assertEquals(entries(TRIE.cursor()), entries(TRIE.prefix("")));
+        assertEquals(List.of("=6", "tea=2", "team=1", "teapot=3", "ten=4", "to=5"), entries(TRIE.cursor()));
+    }
+
+    @Test
+    public void longest_prefix_match_prefers_the_longest_key() {
+        assertEquals(new Pair<>("teapot", 3), TRIE.longestPrefixMatch("teapots"));
+        assertEquals(new Pair<>("tea", 2), TRIE.longestPrefixMatch("teap"));
+        assertEquals(new Pair<>("team", 1), TRIE.longestPrefixMatch("team"));
+        assertEquals(new Pair<>("", 6), TRIE.longestPrefixMatch("te"));
+        assertEquals(new Pair<>("", 6), TRIE.longestPrefixMatch(""));
+
+        RadixTrie<Integer> withoutEmpty = RadixTrie.of(Map.of("ab", 1, "abcd", 2));
+        assertNull(withoutEmpty.longestPrefixMatch(""));
+        assertNull(withoutEmpty.longestPrefixMatch("a"));
+        assertNull(withoutEmpty.longestPrefixMatch("b"));
+        assertEquals(new Pair<>("ab", 1), withoutEmpty.longestPrefixMatch("abc"));
+        Pair<byte[], Integer> bytes = withoutEmpty.longestPrefixMatch(new byte[]{'a', 'b', 'c', 'd', 'e'});
+        assertArrayEquals(new byte[]{'a', 'b', 'c', 'd'}, bytes.first());
+        assertEquals(Integer.valueOf(2), bytes.second());
+    }
+
+    @Test
+    public void empty_trie_holds_nothing() {
+        RadixTrie<Integer> empty = RadixTrie.<Integer>builder().build();
+        assertTrue(empty.isEmpty());
+        assertEquals(0, empty.size());
+        assertNull(empty.get(""));
+        assertNull(empty.get("key"));
+        assertNull(empty.longestPrefixMatch(""));
+        assertNull(empty.longestPrefixMatch("key"));
+        assertFalse(empty.cursor().advance());
+        assertFalse(empty.prefix("").advance());
+        assertFalse(empty.prefix("key").advance());
+    }
+
+    @Test
+    public void multi_byte_keys_are_iterated_in_code_point_order() {
+        Map<String, Integer> entries = new LinkedHashMap<>();
+        entries.put("zebra", 0);
+        entries.put("é", 1);
+        entries.put("éclair", 2);
+        entries.put("日本", 3);
+        entries.put("日本語", 4);
+        entries.put("😀", 5);
+        entries.put("e", 6);
+        RadixTrie<Integer> trie = RadixTrie.of(entries);
+        assertEquals(List.of("e=6", "zebra=0", "é=1", "éclair=2", "日本=3", "日本語=4", "😀=5"),
+                     entries(trie.cursor()));
+        assertEquals(Integer.valueOf(4), trie.get("日本語"));
+        assertNull(trie.get("日"));
+        assertEquals(List.of("日本=3", "日本語=4"), entries(trie.prefix("日")));
+        assertEquals(new Pair<>("日本", 3), trie.longestPrefixMatch("日本人"));
+        // a prefix ending inside a character's encoding still matches the keys starting with its bytes
+        byte[] partial = Arrays.copyOf("日".getBytes(UTF_8), 2);
+        assertEquals(List.of("日本=3", "日本語=4"), entries(trie.prefix(partial)));
+    }
+
+    @Test
+    public void random_tries_agree_with_a_sorted_map() {
+        Random random = new Random(0);
+        byte[] alphabet = {0, 1, 'a', 'b', 0x7F, (byte) 0x80, (byte) 0xFF};
+        for (int round = 0; round < 100; round++) {
+            TreeMap<byte[], Integer> expected = new TreeMap<>(Arrays::compareUnsigned);
+            RadixTrie.Builder<Integer> builder = RadixTrie.builder();
+            int count = random.nextInt(60);
+            for (int i = 0; i < count; i++) {
+                byte[] key = randomKey(random, alphabet);
+                expected.put(key, i);
+                builder.put(key, i);
+            }
+            RadixTrie<Integer> trie = builder.build();
+            assertEquals(expected.size(), trie.size());
+            assertEquals(entries(expected, new byte[0]), byteEntries(trie.cursor()));
+            for (int query = 0; query < 50; query++) {
+                byte[] key = randomKey(random, alphabet);
+                assertEquals(expected.get(key), trie.get(key));
+                assertEquals(entries(expected, key), byteEntries(trie.prefix(key)));
+                byte[] longest = null;
+                for (byte[] candidate : expected.keySet()) {
+                    if (startsWith(key, candidate) && (longest == null || candidate.length > longest.length)) {
+                        longest = candidate;
+                    }
+                }
+                Pair<byte[], Integer> match = trie.longestPrefixMatch(key);
+                if (longest == null) {
+                    assertNull(match);
+                } else {
+                    assertArrayEquals(longest, match.first());
+                    assertEquals(expected.get(longest), match.second());
+                }
+            }
+        }
+    }
+
+    private static byte[] randomKey(Random random, byte[] alphabet) {
+        byte[] key = new byte[random.nextInt(6)];
+        for (int i = 0; i < key.length; i++) key[i] = alphabet[random.nextInt(alphabet.length)];
+        return key;
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        return key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static List<String> entries(TreeMap<byte[], Integer> map, byte[] prefix) {
+        List<String> entries = new ArrayList<>();
+        map.forEach((key, value) -> {
+            if (startsWith(key, prefix)) entries.add(Arrays.toString(key) + "=" + value);
+        });
+        return entries;
+    }
+
+    private static List<String> entries(RadixTrie<Integer>.Cursor cursor) {
+        List<String> entries = new ArrayList<>();
+        while (cursor.advance()) entries.add(cursor.keyString() + "=" + cursor.value());
+        return entries;
+    }
+
+    private static List<String> byteEntries(RadixTrie<Integer>.Cursor cursor) {
+        List<String> entries = new ArrayList<>();
+        while (cursor.advance()) entries.add(Arrays.toString(cursor.keyBytes()) + "=" + cursor.value());
+        return entries;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.ImmutableRoaringBitmap;
+import com.vaticle.typedb.common.collection.RoaringBitmap;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RoaringBitmapTest {
+
+    @Test
+    public void containers_convert_as_they_grow_and_shrink() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        TreeSet<Integer> expected = new TreeSet<>();
+        // enough values in one container to turn it from an array into a bitmap, and back again
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(expected.add(i * 3), bitmap.add(i * 3));
+        }
+        assertEquals(expected, bitmap);
+        for (int i = 0; i < 10_000; i += 2) {
+            assertEquals(expected.remove(i * 3), bitmap.remove(i * 3));
+        }
+        assertEquals(expected, bitmap);
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertFalse(bitmap.contains(3 * 2));
+        assertTrue(bitmap.contains(3));
+    }
+
+    @Test
+    public void values_iterate_in_unsigned_order() {
+        RoaringBitmap bitmap = RoaringBitmap.of(-1, 0, 1, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        List<Integer> values = new ArrayList<>();
+        bitmap.forEachInt(values::add);
+        assertEquals(List.of(0, 1, Integer.MAX_VALUE, Integer.MIN_VALUE, -1), values);
+        assertEquals(values, new ArrayList<>(bitmap));
+    }
+
+    @Test
+    public void set_operations_match_treeSet() {
+        Random random = new Random(0);
+        for (int round = 0; round < 50; round++) {
+            RoaringBitmap first = randomBitmap(random);
+            RoaringBitmap second = randomBitmap(random);
+            assertEquals(and(first, second), RoaringBitmap.and(first, second));
+            assertEquals(or(first, second), RoaringBitmap.or(first, second));
+            assertEquals(andNot(first, second), RoaringBitmap.andNot(first, second));
+            assertEquals(and(first, second).size(), RoaringBitmap.andCardinality(first, second));
+        }
+    }
+
+    @Test
+    public void mapped_bitmaps_answer_in_place() {
+        Random random = new Random(1);
+        for (int round = 0; round < 50; round++) {
+            RoaringBitmap first = randomBitmap(random);
+            RoaringBitmap second = randomBitmap(random);
+            ImmutableRoaringBitmap mappedFirst = ImmutableRoaringBitmap.map(ByteBuffer.wrap(first.toBytes()));
+            ImmutableRoaringBitmap mappedSecond = ImmutableRoaringBitmap.map(ByteBuffer.wrap(second.toBytes()));
+
+            assertEquals(first, mappedFirst);
+            assertEquals(first.cardinality(), mappedFirst.cardinality());
+            assertEquals(first, mappedFirst.toRoaringBitmap());
+            List<Integer> values = new ArrayList<>();
+            mappedFirst.forEachInt(values::add);
+            assertEquals(new ArrayList<>(first), values);
+
+            assertEquals(RoaringBitmap.and(first, second), ImmutableRoaringBitmap.and(mappedFirst, mappedSecond));
+            assertEquals(RoaringBitmap.or(first, second), ImmutableRoaringBitmap.or(mappedFirst, mappedSecond));
+            assertEquals(RoaringBitmap.andNot(first, second), ImmutableRoaringBitmap.andNot(mappedFirst, mappedSecond));
+            assertEquals(RoaringBitmap.andCardinality(first, second),
+                         ImmutableRoaringBitmap.andCardinality(mappedFirst, mappedSecond));
+        }
+    }
+
+    @Test
+    public void results_of_mapped_operations_are_mutable() {
+        RoaringBitmap bitmap = RoaringBitmap.of(1, 2, 3);
+        bitmap.runOptimize();
+        ImmutableRoaringBitmap mapped = ImmutableRoaringBitmap.map(ByteBuffer.wrap(bitmap.toBytes()));
+        RoaringBitmap union = ImmutableRoaringBitmap.or(mapped, mapped);
+        assertTrue(union.add(4));
+        assertTrue(union.remove(1));
+        assertEquals(RoaringBitmap.of(2, 3, 4), union);
+        assertEquals(RoaringBitmap.of(1, 2, 3), mapped);
+    }
+
+    // sparse, dense and run-heavy containers over a few shared keys
+    private static RoaringBitmap randomBitmap(Random random) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int container = 0; container < 4; container++) {
+            int high = random.nextInt(6) << 16;
+            switch (random.nextInt(3)) {
+                case 0:
+                    for (int i = 0; i < 100; i++) bitmap.add(high | random.nextInt(1 << 16));
+                    break;
+                case 1:
+                    for (int i = 0; i < 20_000; i++) bitmap.add(high | random.nextInt(1 << 16));
+                    break;
+                default:
+                    int start = random.nextInt(60_000);
+                    for (int i = start; i < start + random.nextInt(5_000); i++) bitmap.add(high | i);
+            }
+        }
+        if (random.nextBoolean()) bitmap.runOptimize();
+        return bitmap;
+    }
+
+    private static TreeSet<Integer> and(RoaringBitmap first, RoaringBitmap second) {
+        TreeSet<Integer> result = new TreeSet<>(first);
+        result.retainAll(second);
+        return result;
+    }
+
+    private static TreeSet<Integer> or(RoaringBitmap first, RoaringBitmap second) {
+        TreeSet<Integer> result = new TreeSet<>(first);
+        result.addAll(second);
+        return result;
+    }
+
+    private static TreeSet<Integer> andNot(RoaringBitmap first, RoaringBitmap second) {
+        TreeSet<Integer> result = new TreeSet<>(first);
+        result.removeAll(second);
+        return result;
+    }
+}
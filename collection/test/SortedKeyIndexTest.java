@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.collection.test;
+
+import com.vaticle.typedb.common.collection.SortedKeyIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SortedKeyIndexTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("sorted-key-index");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(path);
+        }
+    }
+
+    @Test
+    public void written_entries_are_read_back() throws IOException {
+        for (int blockEntries : new int[]{1, 3, SortedKeyIndex.DEFAULT_BLOCK_ENTRIES}) {
+            NavigableMap<byte[], byte[]> entries = randomEntries(new Random(blockEntries), 1_000);
+            entries.put(new byte[0], new byte[]{42});
+            SortedKeyIndex index = write(entries, blockEntries);
+            assertEquals(entries.size(), index.size());
+            assertEquals(entries(entries), collect(index.cursor()));
+            for (Map.Entry<byte[], byte[]> entry : entries.entrySet()) {
+                assertEquals(ByteBuffer.wrap(entry.getValue()), index.get(entry.getKey()));
+            }
+            Random random = new Random(0);
+            for (int i = 0; i < 1_000; i++) {
+                byte[] key = randomKey(random);
+                assertEquals(entries.containsKey(key), index.contains(key));
+            }
+        }
+    }
+
+    @Test
+    public void ranges_seek_before_between_and_after_entries() throws IOException {
+        Random random = new Random(1);
+        NavigableMap<byte[], byte[]> entries = randomEntries(random, 500);
+        SortedKeyIndex index = write(entries, 4);
+        byte[] first = entries.firstKey(), last = entries.lastKey();
+        byte[] beforeFirst = new byte[0];
+        byte[] afterLast = Arrays.copyOf(last, last.length + 1);
+        byte[] between = Arrays.copyOf(first, first.length + 1);
+        between[first.length] = 1;
+        assertFalse(entries.containsKey(between));
+        List<byte[]> bounds = new ArrayList<>(List.of(beforeFirst, first, between, last, afterLast, new byte[]{-1, -1}));
+        bounds.add(null);
+        for (int i = 0; i < 20; i++) bounds.add(randomKey(random));
+        for (byte[] from : bounds) {
+            for (byte[] to : bounds) {
+                NavigableMap<byte[], byte[]> expected;
+                if (from != null && to != null && Arrays.compareUnsigned(from, to) > 0) expected = new TreeMap<>();
+                else if (from == null && to == null) expected = entries;
+                else if (from == null) expected = entries.headMap(to, false);
+                else if (to == null) expected = entries.tailMap(from, true);
+                else expected = entries.subMap(from, true, to, false);
+                assertEquals(entries(expected), collect(index.range(from, to)));
+            }
+        }
+    }
+
+    @Test
+    public void prefixes_span_block_boundaries() throws IOException {
+        NavigableMap<byte[], byte[]> entries = new TreeMap<>(Arrays::compareUnsigned);
+        for (int a = 0; a < 4; a++) {
+            for (int b = 0; b < 10; b++) {
+                for (int c = 0; c < 3; c++) entries.put(new byte[]{(byte) (a * 60), (byte) b, (byte) (c - 2)}, new byte[]{(byte) c});
+            }
+        }
+        SortedKeyIndex index = write(entries, 4);
+        List<byte[]> prefixes = new ArrayList<>();
+        prefixes.add(new byte[0]);
+        for (byte[] key : entries.keySet()) {
+            prefixes.add(Arrays.copyOf(key, 1));
+            prefixes.add(Arrays.copyOf(key, 2));
+            prefixes.add(key);
+        }
+        prefixes.add(new byte[]{30});
+        prefixes.add(new byte[]{(byte) 180, 10});
+        for (byte[] prefix : prefixes) {
+            NavigableMap<byte[], byte[]> expected = new TreeMap<>(Arrays::compareUnsigned);
+            for (Map.Entry<byte[], byte[]> entry : entries.entrySet()) {
+                byte[] key = entry.getKey();
+                if (key.length >= prefix.length && Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length)) {
+                    expected.put(key, entry.getValue());
+                }
+            }
+            assertEquals(entries(expected), collect(index.prefix(prefix)));
+        }
+    }
+
+    @Test
+    public void empty_tables_have_no_entries() throws IOException {
+        SortedKeyIndex index = write(new TreeMap<>(Arrays::compareUnsigned), 4);
+        assertTrue(index.isEmpty());
+        assertFalse(index.cursor().advance());
+        assertFalse(index.range(null, null).advance());
+        assertFalse(index.prefix(new byte[0]).advance());
+        assertNull(index.get(new byte[0]));
+    }
+
+    @Test
+    public void writers_reject_unsorted_keys() throws IOException {
+        Path file = directory.resolve("unsorted.index");
+        try (SortedKeyIndex.Writer writer = SortedKeyIndex.writer(file)) {
+            writer.add(new byte[]{2}, new byte[0]);
+            for (byte[] key : new byte[][]{{2}, {1}, {1, 5}, new byte[0]}) {
+                try {
+                    writer.add(key, new byte[0]);
+                    fail();
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+            writer.add(new byte[]{(byte) 0x80}, new byte[0]);
+        }
+        // an unfinished writer leaves nothing behind
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void corrupt_buffers_are_rejected() throws IOException {
+        NavigableMap<byte[], byte[]> entries = randomEntries(new Random(2), 10);
+        write(entries, 4);
+        byte[] bytes = Files.readAllBytes(directory.resolve("test.index"));
+        List<byte[]> corrupt = new ArrayList<>();
+        corrupt.add(new byte[0]);
+        corrupt.add(Arrays.copyOf(bytes, bytes.length - 1));
+        byte[] badMagic = bytes.clone();
+        badMagic[0] ^= 1;
+        corrupt.add(badMagic);
+        byte[] badBlockCount = bytes.clone();
+        badBlockCount[bytes.length - 20] = 0x7F;
+        corrupt.add(badBlockCount);
+        for (byte[] bad : corrupt) {
+            try {
+                SortedKeyIndex.map(ByteBuffer.wrap(bad));
+                fail();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    private SortedKeyIndex write(NavigableMap<byte[], byte[]> entries, int blockEntries) throws IOException {
+        Path file = directory.resolve("test.index");
+        try (SortedKeyIndex.Writer writer = SortedKeyIndex.writer(file, blockEntries)) {
+            for (Map.Entry<byte[], byte[]> entry : entries.entrySet()) writer.add(entry.getKey(), entry.getValue());
+            writer.finish();
+        }
+        return SortedKeyIndex.map(file);
+    }
+
+    private static List<String> entries(Map<byte[], byte[]> map) {
+        List<String> entries = new ArrayList<>();
+        for (Map.Entry<byte[], byte[]> entry : map.entrySet()) {
+            entries.add(Arrays.toString(entry.getKey()) + "=" + Arrays.toString(entry.getValue()));
+        }
+        return entries;
+    }
+
+    private static List<String> collect(SortedKeyIndex.Cursor cursor) {
+        List<String> entries = new ArrayList<>();
+        while (cursor.advance()) {
+            ByteBuffer value = cursor.value();
+            byte[] bytes = new byte[value.remaining()];
+            value.get(bytes);
+            ByteBuffer key = cursor.key();
+            byte[] keyBytes = new byte[key.remaining()];
+            key.get(keyBytes);
+            assertArrayEquals(cursor.keyBytes(), keyBytes);
+            entries.add(Arrays.toString(keyBytes) + "=" + Arrays.toString(bytes));
+        }
+        return entries;
+    }
+
+    private static NavigableMap<byte[], byte[]> randomEntries(Random random, int count) {
+        NavigableMap<byte[], byte[]> entries = new TreeMap<>(Arrays::compareUnsigned);
+        while (entries.size() < count) {
+            byte[] value = new byte[random.nextInt(200)];
+            random.nextBytes(value);
+            entries.put(randomKey(random), value);
+        }
+        return entries;
+    }
+
+    // keys share long prefixes, as composite keys do, and include bytes above 0x7F to test unsigned ordering
+    private static byte[] randomKey(Random random) {
+        byte[] key = new byte[1 + random.nextInt(12)];
+        for (int i = 0; i < key.length; i++) key[i] = (byte) (random.nextInt(4) * 0x50);
+        return key;
+    }
+}
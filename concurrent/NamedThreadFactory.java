@@ -18,16 +18,33 @@
 
 package com.vaticle.typedb.common.concurrent;
 
+import com.vaticle.typedb.common.util.Java;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class NamedThreadFactory implements ThreadFactory {
 
+    // resolved once: Thread.ofVirtual().unstarted(runnable), available from Java 21
+    private static final MethodHandle UNSTARTED_VIRTUAL = unstartedVirtual();
+
     private final AtomicLong index = new AtomicLong(0);
     private final String prefix;
+    private final boolean virtual;
 
     public NamedThreadFactory(String prefix) {
+        this(prefix, false);
+    }
+
+    /**
+     * @param virtual whether to create virtual threads, when the running JVM supports them, and platform threads otherwise
+     */
+    public NamedThreadFactory(String prefix, boolean virtual) {
         this.prefix = prefix + "::";
+        this.virtual = virtual && UNSTARTED_VIRTUAL != null;
     }
 
     public NamedThreadFactory(Class<?> clazz, String function) {
@@ -42,10 +59,45 @@ public class NamedThreadFactory implements ThreadFactory {
         return new NamedThreadFactory(clazz, function);
     }
 
+    public static NamedThreadFactory createVirtual(String prefix) {
+        return new NamedThreadFactory(prefix, true);
+    }
+
+    public static boolean supportsVirtualThreads() {
+        return UNSTARTED_VIRTUAL != null;
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
     @Override
     public Thread newThread(Runnable runnable) {
-        Thread thread = new Thread(runnable);
+        Thread thread = virtual ? newVirtualThread(runnable) : new Thread(runnable);
         thread.setName(prefix + index.getAndIncrement());
         return thread;
     }
+
+    private static Thread newVirtualThread(Runnable runnable) {
+        try {
+            return (Thread) UNSTARTED_VIRTUAL.invoke(runnable);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle unstartedVirtual() {
+        if (!Java.isAtLeast(21)) return null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(Class.forName("java.lang.Thread$Builder$OfVirtual")));
+            MethodHandle unstarted = lookup.findVirtual(builder, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+            return MethodHandles.foldArguments(unstarted, ofVirtual.asType(MethodType.methodType(builder)));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.concurrent;
+
+import java.time.Duration;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A fixed pool of worker threads that run tasks from a number of priority lanes, lane 0 being the most urgent. Within a
+ * lane, tasks with a deadline run earliest deadline first, ahead of tasks without one, which run in submission order.
+ *
+ * Each worker owns a queue per lane. Tasks submitted from a worker go to its own queues, and others are spread over the
+ * workers; a worker whose queues are empty steals the most urgent task of another worker. A worker serves its most
+ * urgent non-empty lane, but a less urgent lane that has been passed over starvationLimit times is served next, so
+ * that background lanes keep making progress under a steady load of urgent work.
+ *
+ * Workers are daemon threads named by {@link NamedThreadFactory} after the scheduler.
+ */
+public class PriorityScheduler implements AutoCloseable {
+
+    public static final int DEFAULT_STARVATION_LIMIT = 8;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final ThreadLocal<Worker> CURRENT = new ThreadLocal<>();
+
+    private final Worker[] workers;
+    private final Lane[] lanes;
+    private final int starvationLimit;
+    private final AtomicInteger next;
+    private final AtomicLong sequence;
+    // submissions between their shutdown check and their push, which workers must wait for before exiting
+    private final AtomicInteger submitting;
+    private volatile boolean shutdown;
+
+    private PriorityScheduler(String name, int parallelism, int lanes, int starvationLimit) {
+        if (parallelism < 1 || lanes < 1 || starvationLimit < 1) {
+            throw new IllegalArgumentException("Parallelism, lanes and starvation limit must be positive");
+        }
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) this.lanes[i] = new Lane();
+        this.starvationLimit = starvationLimit;
+        this.next = new AtomicInteger();
+        this.sequence = new AtomicLong();
+        this.submitting = new AtomicInteger();
+        NamedThreadFactory threadFactory = NamedThreadFactory.create(name);
+        this.workers = new Worker[parallelism];
+        for (int i = 0; i < parallelism; i++) workers[i] = new Worker(threadFactory, lanes);
+        for (Worker worker : workers) worker.thread.start();
+    }
+
+    public static PriorityScheduler create(String name, int parallelism, int lanes) {
+        return new PriorityScheduler(name, parallelism, lanes, DEFAULT_STARVATION_LIMIT);
+    }
+
+    public static PriorityScheduler create(String name, int parallelism, int lanes, int starvationLimit) {
+        return new PriorityScheduler(name, parallelism, lanes, starvationLimit);
+    }
+
+    public int lanes() {
+        return lanes.length;
+    }
+
+    public <T> Promise<T> submit(int lane, Supplier<T> task) {
+        return submit(lane, null, task);
+    }
+
+    /**
+     * @param deadline the time from now by which the task should start, or null for none. A task that misses its
+     *                 deadline still runs, and is counted in the lane's metrics.
+     */
+    public <T> Promise<T> submit(int lane, Duration deadline, Supplier<T> task) {
+        Promise<T> promise = new Promise<>();
+        schedule(lane, deadline, () -> {
+            T value;
+            try {
+                value = task.get();
+            } catch (Throwable e) {
+                promise.fail(e);
+                return;
+            }
+            promise.complete(value);
+        });
+        return promise;
+    }
+
+    public void execute(int lane, Runnable task) {
+        schedule(lane, null, task);
+    }
+
+    public void execute(int lane, Duration deadline, Runnable task) {
+        schedule(lane, deadline, task);
+    }
+
+    /**
+     * @return an executor that runs its tasks in the lane, without a deadline, such as for {@link Promise} continuations
+     */
+    public Executor executor(int lane) {
+        checkLane(lane);
+        return task -> execute(lane, task);
+    }
+
+    public Metrics metrics(int lane) {
+        checkLane(lane);
+        return lanes[lane].metrics();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Stop accepting tasks. Tasks already submitted still run, after which the workers exit.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (Worker worker : workers) LockSupport.unpark(worker.thread);
+    }
+
+    /**
+     * @return true if every worker exited within the timeout
+     */
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        long end = System.nanoTime() + timeout.toNanos();
+        for (Worker worker : workers) {
+            long remaining = end - System.nanoTime();
+            if (remaining > 0) TimeUnit.NANOSECONDS.timedJoin(worker.thread, remaining);
+            if (worker.thread.isAlive()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Shut down, and wait for the workers to run the tasks already submitted and exit. Called from a task of this
+     * scheduler, it only shuts down, as its worker cannot wait for itself.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        if (currentWorker() != null) return;
+        boolean interrupted = false;
+        for (Worker worker : workers) {
+            while (worker.thread.isAlive()) {
+                try {
+                    worker.thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void schedule(int lane, Duration deadline, Runnable runnable) {
+        checkLane(lane);
+        submitting.incrementAndGet();
+        try {
+            if (shutdown) throw new RejectedExecutionException("PriorityScheduler has been shut down");
+            long now = System.nanoTime();
+            Task task = new Task(runnable, lane, sequence.getAndIncrement(), now, deadline != null,
+                    deadline == null ? 0 : now + deadline.toNanos());
+            Worker current = currentWorker();
+            Worker target = current != null ? current : workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+            lanes[lane].queued.increment();
+            target.push(task);
+            if (target.parked) LockSupport.unpark(target.thread);
+            else wakeIdle(target);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    // the worker of this scheduler running on the current thread, or null
+    private Worker currentWorker() {
+        Worker worker = CURRENT.get();
+        return worker != null && worker.scheduler() == this ? worker : null;
+    }
+
+    // wake one idle worker so that it can steal work queued behind a busy one
+    private void wakeIdle(Worker except) {
+        for (Worker worker : workers) {
+            if (worker != except && worker.parked) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    private Task steal(Worker thief) {
+        int start = ThreadLocalRandom.current().nextInt(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            Worker victim = workers[(start + i) % workers.length];
+            if (victim != thief && victim.size > 0) {
+                Task task = victim.pollMostUrgent();
+                if (task != null) return task;
+            }
+        }
+        return null;
+    }
+
+    private void checkLane(int lane) {
+        if (lane < 0 || lane >= lanes.length) throw new IllegalArgumentException("No such lane: " + lane);
+    }
+
+    private void run(Task task) {
+        long started = System.nanoTime();
+        Lane lane = lanes[task.lane];
+        lane.queued.decrement();
+        lane.started(started - task.submitted, task.hasDeadline && started - task.deadline > 0);
+        try {
+            task.runnable.run();
+        } catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private static class Task implements Comparable<Task> {
+
+        private final Runnable runnable;
+        private final int lane;
+        private final long sequence;
+        private final long submitted;
+        private final boolean hasDeadline;
+        private final long deadline;
+
+        private Task(Runnable runnable, int lane, long sequence, long submitted, boolean hasDeadline, long deadline) {
+            this.runnable = runnable;
+            this.lane = lane;
+            this.sequence = sequence;
+            this.submitted = submitted;
+            this.hasDeadline = hasDeadline;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (hasDeadline != other.hasDeadline) return hasDeadline ? -1 : 1;
+            // nanoTime values may wrap, so only their difference is meaningful
+            if (hasDeadline && deadline != other.deadline) return deadline - other.deadline < 0 ? -1 : 1;
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final Thread thread;
+        private final ReentrantLock lock;
+        private final PriorityQueue<Task>[] queues;
+        private final int[] skipped;
+        private volatile int size;
+        private volatile boolean parked;
+
+        @SuppressWarnings("unchecked")
+        private Worker(NamedThreadFactory threadFactory, int lanes) {
+            this.thread = threadFactory.newThread(this);
+            this.thread.setDaemon(true);
+            this.lock = new ReentrantLock();
+            this.queues = (PriorityQueue<Task>[]) new PriorityQueue<?>[lanes];
+            for (int i = 0; i < lanes; i++) queues[i] = new PriorityQueue<>();
+            this.skipped = new int[lanes];
+        }
+
+        private PriorityScheduler scheduler() {
+            return PriorityScheduler.this;
+        }
+
+        @Override
+        public void run() {
+            CURRENT.set(this);
+            while (true) {
+                Task task = pollOwn();
+                if (task == null) task = steal(this);
+                if (task != null) {
+                    PriorityScheduler.this.run(task);
+                    continue;
+                }
+                // announce parking before the final check, so that a concurrent submission either sees the flag
+                // or is seen by the check
+                parked = true;
+                task = pollOwn();
+                if (task == null) task = steal(this);
+                if (task == null && shutdown && submitting.get() == 0) {
+                    // no submission can queue a task after this point, so one last look decides whether to exit
+                    task = pollOwn();
+                    if (task == null) task = steal(this);
+                    if (task == null) return;
+                }
+                if (task != null) {
+                    parked = false;
+                    PriorityScheduler.this.run(task);
+                } else {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    parked = false;
+                }
+            }
+        }
+
+        private void push(Task task) {
+            lock.lock();
+            try {
+                queues[task.lane].add(task);
+                size++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // serve the most urgent lane, unless a less urgent one has been passed over too often
+        private Task pollOwn() {
+            if (size == 0) return null;
+            lock.lock();
+            try {
+                int chosen = -1;
+                for (int lane = 0; lane < queues.length; lane++) {
+                    if (queues[lane].isEmpty()) continue;
+                    if (chosen < 0) {
+                        chosen = lane;
+                    } else if (++skipped[lane] >= starvationLimit) {
+                        chosen = lane;
+                        break;
+                    }
+                }
+                if (chosen < 0) return null;
+                skipped[chosen] = 0;
+                size--;
+                return queues[chosen].poll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Task pollMostUrgent() {
+            lock.lock();
+            try {
+                for (PriorityQueue<Task> queue : queues) {
+                    if (!queue.isEmpty()) {
+                        size--;
+                        return queue.poll();
+                    }
+                }
+                return null;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static class Lane {
+
+        private final LongAdder queued = new LongAdder();
+        private final LongAdder started = new LongAdder();
+        private final LongAdder missedDeadlines = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+        private void started(long waitNanos, boolean missedDeadline) {
+            started.increment();
+            totalWaitNanos.add(waitNanos);
+            maxWaitNanos.accumulate(waitNanos);
+            if (missedDeadline) missedDeadlines.increment();
+        }
+
+        private Metrics metrics() {
+            return new Metrics(queued.sum(), started.sum(), missedDeadlines.sum(), totalWaitNanos.sum(),
+                               maxWaitNanos.get());
+        }
+    }
+
+    /**
+     * A snapshot of the activity of a lane since the scheduler was created, where the wait of a task is the time from
+     * its submission until a worker started it.
+     */
+    public static class Metrics {
+
+        private final long queued;
+        private final long started;
+        private final long missedDeadlines;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+
+        private Metrics(long queued, long started, long missedDeadlines, long totalWaitNanos, long maxWaitNanos) {
+            this.queued = queued;
+            this.started = started;
+            this.missedDeadlines = missedDeadlines;
+            this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        public long queued() {
+            return queued;
+        }
+
+        public long started() {
+            return started;
+        }
+
+        public long missedDeadlines() {
+            return missedDeadlines;
+        }
+
+        public long meanWaitNanos() {
+            return started == 0 ? 0 : totalWaitNanos / started;
+        }
+
+        public long maxWaitNanos() {
+            return maxWaitNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{queued=" + queued + ", started=" + started + ", missedDeadlines=" + missedDeadlines +
+                    ", meanWaitNanos=" + meanWaitNanos() + ", maxWaitNanos=" + maxWaitNanos + "}";
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.concurrent;
+
+import com.vaticle.typedb.common.collection.Either;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A single-assignment result of an asynchronous computation, completed with either a value or a failure. A pending
+ * promise holds a stack of its continuations in a single field updated by compare-and-set, so registering a
+ * continuation costs one small allocation and no locking.
+ *
+ * Continuations registered without an executor run inline: on the completing thread, or immediately on the
+ * registering thread if the promise is already complete. They should therefore be short and non-blocking. A promise
+ * completed from within a continuation queues its own continuations to run after the current one returns, rather than
+ * running them on top of it, so arbitrarily long chains of dependent promises complete in constant stack depth.
+ */
+public class Promise<T> {
+
+    private static final VarHandle STATE;
+    private static final ThreadLocal<Trampoline> TRAMPOLINE = ThreadLocal.withInitial(Trampoline::new);
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Promise.class, "state", Object.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // null or a stack of Continuations while pending, and the Either result once complete
+    private volatile Object state;
+
+    public Promise() {
+    }
+
+    public static <T> Promise<T> promise() {
+        return new Promise<>();
+    }
+
+    public static <T> Promise<T> completed(T value) {
+        Promise<T> promise = new Promise<>();
+        promise.state = Either.first(value);
+        return promise;
+    }
+
+    public static <T> Promise<T> failed(Throwable error) {
+        Objects.requireNonNull(error);
+        Promise<T> promise = new Promise<>();
+        promise.state = Either.second(error);
+        return promise;
+    }
+
+    /**
+     * @return a promise completed with the values of all the promises, in order, or with the first failure among them
+     */
+    public static <T> Promise<List<T>> gather(List<Promise<T>> promises) {
+        Promise<List<T>> gathered = new Promise<>();
+        if (promises.isEmpty()) {
+            gathered.complete(List.of());
+            return gathered;
+        }
+        Object[] values = new Object[promises.size()];
+        AtomicInteger remaining = new AtomicInteger(values.length);
+        for (int i = 0; i < values.length; i++) {
+            int index = i;
+            promises.get(i).onComplete(result -> {
+                if (result.isSecond()) {
+                    gathered.fail(result.second());
+                } else {
+                    values[index] = result.first();
+                    if (remaining.decrementAndGet() == 0) gathered.complete(asList(values));
+                }
+            });
+        }
+        return gathered;
+    }
+
+    /**
+     * @return false if the promise was already complete
+     */
+    public boolean complete(T value) {
+        return complete(Either.first(value));
+    }
+
+    /**
+     * @return false if the promise was already complete
+     */
+    public boolean fail(Throwable error) {
+        Objects.requireNonNull(error);
+        return complete(Either.second(error));
+    }
+
+    /**
+     * @return false if the promise was already complete
+     */
+    @SuppressWarnings("unchecked")
+    public boolean complete(Either<T, Throwable> result) {
+        Objects.requireNonNull(result);
+        Object current;
+        do {
+            current = state;
+            if (current instanceof Either) return false;
+        } while (!STATE.compareAndSet(this, current, result));
+        if (current != null) runAll(reverse((Continuation<T>) current), result);
+        return true;
+    }
+
+    public boolean isDone() {
+        return state instanceof Either;
+    }
+
+    /**
+     * @return the result, or null if the promise is still pending
+     */
+    @SuppressWarnings("unchecked")
+    public Either<T, Throwable> result() {
+        Object current = state;
+        return current instanceof Either ? (Either<T, Throwable>) current : null;
+    }
+
+    /**
+     * Block until the promise is complete.
+     *
+     * @return the value of the promise
+     * @throws CompletionException wrapping the failure of the promise, unless it was unchecked
+     */
+    public T join() {
+        if (!isDone()) {
+            Thread waiter = Thread.currentThread();
+            onComplete(result -> LockSupport.unpark(waiter));
+            boolean interrupted = false;
+            while (!isDone()) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) interrupted = true;
+            }
+            if (interrupted) waiter.interrupt();
+        }
+        Either<T, Throwable> result = result();
+        if (!result.isSecond()) return result.first();
+        Throwable error = result.second();
+        if (error instanceof RuntimeException) throw (RuntimeException) error;
+        else if (error instanceof Error) throw (Error) error;
+        else throw new CompletionException(error);
+    }
+
+    public void onComplete(Consumer<Either<T, Throwable>> action) {
+        onComplete(action, null);
+    }
+
+    /**
+     * @param executor the executor to run the action on, or null to run it inline
+     */
+    public void onComplete(Consumer<Either<T, Throwable>> action, Executor executor) {
+        onComplete(action, executor, null);
+    }
+
+    // the dependent promise, if any, is failed in place of reporting an action that could not be run
+    @SuppressWarnings("unchecked")
+    private void onComplete(Consumer<Either<T, Throwable>> action, Executor executor, Promise<?> dependent) {
+        Continuation<T> continuation = null;
+        Object current;
+        do {
+            current = state;
+            if (current instanceof Either) {
+                run(action, executor, dependent, (Either<T, Throwable>) current);
+                return;
+            }
+            if (continuation == null) continuation = new Continuation<>(action, executor, dependent);
+            continuation.next = (Continuation<T>) current;
+        } while (!STATE.compareAndSet(this, current, continuation));
+    }
+
+    public <U> Promise<U> map(Function<? super T, ? extends U> function) {
+        return map(function, null);
+    }
+
+    public <U> Promise<U> map(Function<? super T, ? extends U> function, Executor executor) {
+        Promise<U> mapped = new Promise<>();
+        onComplete(result -> {
+            if (result.isSecond()) {
+                mapped.fail(result.second());
+            } else {
+                U value;
+                try {
+                    value = function.apply(result.first());
+                } catch (Throwable e) {
+                    mapped.fail(e);
+                    return;
+                }
+                mapped.complete(value);
+            }
+        }, executor, mapped);
+        return mapped;
+    }
+
+    public <U> Promise<U> flatMap(Function<? super T, Promise<U>> function) {
+        return flatMap(function, null);
+    }
+
+    public <U> Promise<U> flatMap(Function<? super T, Promise<U>> function, Executor executor) {
+        Promise<U> mapped = new Promise<>();
+        onComplete(result -> {
+            if (result.isSecond()) {
+                mapped.fail(result.second());
+            } else {
+                Promise<U> next;
+                try {
+                    next = function.apply(result.first());
+                } catch (Throwable e) {
+                    mapped.fail(e);
+                    return;
+                }
+                next.onComplete(mapped::complete);
+            }
+        }, executor, mapped);
+        return mapped;
+    }
+
+    /**
+     * @return a promise completed with the value of this promise, or with the function applied to its failure
+     */
+    public Promise<T> recover(Function<Throwable, ? extends T> function) {
+        return recover(function, null);
+    }
+
+    public Promise<T> recover(Function<Throwable, ? extends T> function, Executor executor) {
+        Promise<T> recovered = new Promise<>();
+        onComplete(result -> {
+            if (!result.isSecond()) {
+                recovered.complete(result);
+            } else {
+                T value;
+                try {
+                    value = function.apply(result.second());
+                } catch (Throwable e) {
+                    recovered.fail(e);
+                    return;
+                }
+                recovered.complete(value);
+            }
+        }, executor, recovered);
+        return recovered;
+    }
+
+    @Override
+    public String toString() {
+        Either<T, Throwable> result = result();
+        if (result == null) return "Promise[pending]";
+        else if (result.isSecond()) return "Promise[failed: " + result.second() + "]";
+        else return "Promise[" + result.first() + "]";
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> asList(Object[] values) {
+        return (List<T>) Arrays.asList(values);
+    }
+
+    // continuations are pushed onto a stack, so reverse it to run them in registration order
+    private static <T> Continuation<T> reverse(Continuation<T> head) {
+        Continuation<T> reversed = null;
+        while (head != null) {
+            Continuation<T> next = head.next;
+            head.next = reversed;
+            reversed = head;
+            head = next;
+        }
+        return reversed;
+    }
+
+    // runs the continuations, unless this thread is already running others, in which case they are queued behind them
+    private static <T> void runAll(Continuation<T> continuation, Either<T, Throwable> result) {
+        Trampoline trampoline = TRAMPOLINE.get();
+        if (trampoline.running) {
+            trampoline.pending.add(new Completion<>(continuation, result));
+            return;
+        }
+        trampoline.running = true;
+        try {
+            run(continuation, result);
+            Completion<?> completion;
+            while ((completion = trampoline.pending.poll()) != null) completion.run();
+        } finally {
+            trampoline.running = false;
+        }
+    }
+
+    private static <T> void run(Continuation<T> continuation, Either<T, Throwable> result) {
+        for (; continuation != null; continuation = continuation.next) {
+            run(continuation.action, continuation.executor, continuation.dependent, result);
+        }
+    }
+
+    private static <T> void run(Consumer<Either<T, Throwable>> action, Executor executor, Promise<?> dependent,
+                                Either<T, Throwable> result) {
+        try {
+            if (executor != null) executor.execute(() -> action.accept(result));
+            else action.accept(result);
+        } catch (Throwable e) {
+            // like CompletableFuture, an action the executor rejects fails its dependent promise rather than leaving it
+            // pending forever; and a failing continuation must not prevent the ones after it from running
+            if (dependent != null && dependent.fail(e)) return;
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private static class Continuation<T> {
+
+        private final Consumer<Either<T, Throwable>> action;
+        private final Executor executor;
+        private final Promise<?> dependent;
+        private Continuation<T> next;
+
+        private Continuation(Consumer<Either<T, Throwable>> action, Executor executor, Promise<?> dependent) {
+            this.action = action;
+            this.executor = executor;
+            this.dependent = dependent;
+        }
+    }
+
+    private static class Completion<T> {
+
+        private final Continuation<T> continuation;
+        private final Either<T, Throwable> result;
+
+        private Completion(Continuation<T> continuation, Either<T, Throwable> result) {
+            this.continuation = continuation;
+            this.result = result;
+        }
+
+        private void run() {
+            Promise.run(continuation, result);
+        }
+    }
+
+    private static class Trampoline {
+
+        private final ArrayDeque<Completion<?>> pending = new ArrayDeque<>();
+        private boolean running = false;
+    }
+}
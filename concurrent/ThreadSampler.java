@@ -0,0 +1,312 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.concurrent;
+
+import com.vaticle.typedb.common.collection.Long2ObjectMap;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples every live platform thread on a fixed interval and attributes its CPU time, allocated bytes, and blocked and
+ * waited time to its group: the part of its name before the last "::", as given by {@link NamedThreadFactory} and
+ * {@link NamedForkJoinWorkerThreadFactory}. Usage is counted from the first sample onwards, and whatever a thread
+ * uses between its last sample and its death is not counted.
+ *
+ * When enabled, stack sampling records the stacks of runnable threads in the folded format read by flame graph tools:
+ * one line per distinct stack, holding the group and the frames from the root, separated by ';', then the sample count.
+ */
+public class ThreadSampler implements AutoCloseable {
+
+    private static final String SEPARATOR = "::";
+
+    private final ThreadMXBean threads;
+    private final com.sun.management.ThreadMXBean extended;
+    private final ScheduledExecutorService scheduler;
+    private final int stackSampleEvery;
+    private final int maxStackDepth;
+    private final boolean cpuTimeWasEnabled;
+    private final boolean allocatedMemoryWasEnabled;
+    private final boolean contentionMonitoringWasEnabled;
+    private final Map<String, Usage> usage;
+    private final Map<String, Long> stacks;
+    private Long2ObjectMap<Sample> samples;
+    private long ticks;
+
+    private ThreadSampler(Duration interval, int stackSampleEvery, int maxStackDepth) {
+        this.threads = ManagementFactory.getThreadMXBean();
+        this.extended = threads instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) threads : null;
+        this.stackSampleEvery = stackSampleEvery;
+        this.maxStackDepth = maxStackDepth;
+        this.usage = new HashMap<>();
+        this.stacks = new HashMap<>();
+        this.samples = new Long2ObjectMap<>();
+        this.cpuTimeWasEnabled = threads.isThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+        if (threads.isThreadCpuTimeSupported()) threads.setThreadCpuTimeEnabled(true);
+        this.allocatedMemoryWasEnabled = allocatedMemorySupported() && extended.isThreadAllocatedMemoryEnabled();
+        if (allocatedMemorySupported()) extended.setThreadAllocatedMemoryEnabled(true);
+        this.contentionMonitoringWasEnabled = threads.isThreadContentionMonitoringSupported() && threads.isThreadContentionMonitoringEnabled();
+        if (threads.isThreadContentionMonitoringSupported()) threads.setThreadContentionMonitoringEnabled(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = NamedThreadFactory.create(ThreadSampler.class.getSimpleName()).newThread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long nanos = interval.toNanos();
+        scheduler.scheduleAtFixedRate(this::sampleSafely, 0, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static ThreadSampler start(Duration interval) {
+        return new ThreadSampler(interval, 0, 0);
+    }
+
+    /**
+     * @param stackSampleEvery the number of intervals between stack samples, which should be kept high as each stack
+     *                         sample briefly pauses every thread at a safepoint
+     * @param maxStackDepth    the number of frames kept from the top of each stack
+     */
+    public static ThreadSampler start(Duration interval, int stackSampleEvery, int maxStackDepth) {
+        if (stackSampleEvery < 1 || maxStackDepth < 1) {
+            throw new IllegalArgumentException("Stack sampling interval and depth must be positive");
+        }
+        return new ThreadSampler(interval, stackSampleEvery, maxStackDepth);
+    }
+
+    public static String group(String threadName) {
+        int end = threadName.lastIndexOf(SEPARATOR);
+        return end < 0 ? threadName : threadName.substring(0, end);
+    }
+
+    /**
+     * @return the usage accumulated by each group so far
+     */
+    public synchronized Map<String, Usage> usage() {
+        Map<String, Usage> copy = new HashMap<>();
+        usage.forEach((group, groupUsage) -> copy.put(group, groupUsage.copy()));
+        return copy;
+    }
+
+    /**
+     * @return the number of times each folded stack was sampled so far
+     */
+    public synchronized Map<String, Long> foldedStacks() {
+        return new HashMap<>(stacks);
+    }
+
+    public void writeFoldedStacks(Appendable out) throws IOException {
+        for (Map.Entry<String, Long> entry : foldedStacks().entrySet()) {
+            out.append(entry.getKey()).append(' ').append(Long.toString(entry.getValue())).append('\n');
+        }
+    }
+
+    /**
+     * Stop sampling, and restore the JVM's thread CPU time, allocated memory and contention monitoring settings.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!cpuTimeWasEnabled && threads.isThreadCpuTimeSupported()) threads.setThreadCpuTimeEnabled(false);
+        if (!allocatedMemoryWasEnabled && allocatedMemorySupported()) extended.setThreadAllocatedMemoryEnabled(false);
+        if (!contentionMonitoringWasEnabled && threads.isThreadContentionMonitoringSupported()) {
+            threads.setThreadContentionMonitoringEnabled(false);
+        }
+    }
+
+    private boolean allocatedMemorySupported() {
+        return extended != null && extended.isThreadAllocatedMemorySupported();
+    }
+
+    // an exception escaping a periodic task would cancel every later sample, so it is reported and sampling goes on
+    private void sampleSafely() {
+        try {
+            sample();
+        } catch (Throwable e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    private synchronized void sample() {
+        boolean first = ticks++ == 0;
+        long[] ids = threads.getAllThreadIds();
+        boolean sampleStacks = stackSampleEvery > 0 && ticks % stackSampleEvery == 0;
+        ThreadInfo[] infos = sampleStacks ? threads.getThreadInfo(ids, maxStackDepth) : threads.getThreadInfo(ids);
+        long[] cpu = cpuTime(ids);
+        long[] allocated = allocatedBytes(ids);
+        Long2ObjectMap<Sample> current = new Long2ObjectMap<>(ids.length);
+        for (String group : usage.keySet()) usage.get(group).threads = 0;
+        for (int i = 0; i < ids.length; i++) {
+            ThreadInfo info = infos[i];
+            if (info == null) continue;
+            Sample sample = new Sample(group(info.getThreadName()), cpu[i], allocated[i], info);
+            // threads born since the previous sample are counted from zero, while those alive at the start are not
+            Sample previous = first ? sample : samples.getOrDefault(ids[i], Sample.ZERO);
+            Usage groupUsage = usage.computeIfAbsent(sample.group, group -> new Usage());
+            groupUsage.add(sample, previous);
+            current.put(ids[i], sample);
+            if (sampleStacks && info.getThreadState() == Thread.State.RUNNABLE && info.getStackTrace().length > 0) {
+                stacks.merge(fold(sample.group, info.getStackTrace()), 1L, Long::sum);
+            }
+        }
+        samples = current;
+    }
+
+    private long[] cpuTime(long[] ids) {
+        if (!threads.isThreadCpuTimeEnabled()) return new long[ids.length];
+        if (extended != null) return extended.getThreadCpuTime(ids);
+        long[] cpu = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) cpu[i] = threads.getThreadCpuTime(ids[i]);
+        return cpu;
+    }
+
+    private long[] allocatedBytes(long[] ids) {
+        if (extended == null || !extended.isThreadAllocatedMemoryEnabled()) return new long[ids.length];
+        return extended.getThreadAllocatedBytes(ids);
+    }
+
+    private static String fold(String group, StackTraceElement[] stack) {
+        StringBuilder folded = new StringBuilder(group);
+        for (int i = stack.length - 1; i >= 0; i--) {
+            folded.append(';').append(stack[i].getClassName()).append('.').append(stack[i].getMethodName());
+        }
+        return folded.toString().replace(' ', '_');
+    }
+
+    private static class Sample {
+
+        private static final Sample ZERO = new Sample();
+
+        private final String group;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+        private final long blockedCount;
+        private final long blockedMillis;
+        private final long waitedCount;
+        private final long waitedMillis;
+
+        private Sample() {
+            this.group = null;
+            this.cpuNanos = 0;
+            this.allocatedBytes = 0;
+            this.blockedCount = 0;
+            this.blockedMillis = 0;
+            this.waitedCount = 0;
+            this.waitedMillis = 0;
+        }
+
+        // unsupported or disabled measurements are reported as -1, and count as zero
+        private Sample(String group, long cpuNanos, long allocatedBytes, ThreadInfo info) {
+            this.group = group;
+            this.cpuNanos = Math.max(cpuNanos, 0);
+            this.allocatedBytes = Math.max(allocatedBytes, 0);
+            this.blockedCount = Math.max(info.getBlockedCount(), 0);
+            this.blockedMillis = Math.max(info.getBlockedTime(), 0);
+            this.waitedCount = Math.max(info.getWaitedCount(), 0);
+            this.waitedMillis = Math.max(info.getWaitedTime(), 0);
+        }
+    }
+
+    /**
+     * The usage of a group of threads, accumulated since sampling started.
+     */
+    public static class Usage {
+
+        private int threads;
+        private long cpuNanos;
+        private long allocatedBytes;
+        private long blockedCount;
+        private long blockedMillis;
+        private long waitedCount;
+        private long waitedMillis;
+
+        private Usage() {
+        }
+
+        /**
+         * @return the number of live threads in the group at the latest sample
+         */
+        public int threads() {
+            return threads;
+        }
+
+        public long cpuNanos() {
+            return cpuNanos;
+        }
+
+        public long allocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long blockedCount() {
+            return blockedCount;
+        }
+
+        public long blockedMillis() {
+            return blockedMillis;
+        }
+
+        public long waitedCount() {
+            return waitedCount;
+        }
+
+        public long waitedMillis() {
+            return waitedMillis;
+        }
+
+        private void add(Sample sample, Sample previous) {
+            threads++;
+            cpuNanos += Math.max(sample.cpuNanos - previous.cpuNanos, 0);
+            allocatedBytes += Math.max(sample.allocatedBytes - previous.allocatedBytes, 0);
+            blockedCount += Math.max(sample.blockedCount - previous.blockedCount, 0);
+            blockedMillis += Math.max(sample.blockedMillis - previous.blockedMillis, 0);
+            waitedCount += Math.max(sample.waitedCount - previous.waitedCount, 0);
+            waitedMillis += Math.max(sample.waitedMillis - previous.waitedMillis, 0);
+        }
+
+        private Usage copy() {
+            Usage copy = new Usage();
+            copy.threads = threads;
+            copy.cpuNanos = cpuNanos;
+            copy.allocatedBytes = allocatedBytes;
+            copy.blockedCount = blockedCount;
+            copy.blockedMillis = blockedMillis;
+            copy.waitedCount = waitedCount;
+            copy.waitedMillis = waitedMillis;
+            return copy;
+        }
+
+        @Override
+        public String toString() {
+            return "Usage{threads=" + threads + ", cpuNanos=" + cpuNanos + ", allocatedBytes=" + allocatedBytes +
+                    ", blockedCount=" + blockedCount + ", blockedMillis=" + blockedMillis +
+                    ", waitedCount=" + waitedCount + ", waitedMillis=" + waitedMillis + "}";
+        }
+    }
+}
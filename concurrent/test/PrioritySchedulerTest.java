@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.concurrent.test;
+
+import com.vaticle.typedb.common.concurrent.PriorityScheduler;
+import com.vaticle.typedb.common.concurrent.Promise;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PrioritySchedulerTest {
+
+    @Test
+    public void runs_every_submitted_task() {
+        try (PriorityScheduler scheduler = PriorityScheduler.create("test", 4, 3)) {
+            AtomicLong sum = new AtomicLong();
+            List<Promise<Integer>> promises = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                int value = i;
+                promises.add(scheduler.submit(i % 3, () -> {
+                    sum.addAndGet(value);
+                    return value;
+                }));
+            }
+            for (int i = 0; i < promises.size(); i++) assertEquals(Integer.valueOf(i), promises.get(i).join());
+            assertEquals(49_995_000L, sum.get());
+            long started = 0;
+            for (int lane = 0; lane < 3; lane++) started += scheduler.metrics(lane).started();
+            assertEquals(10_000, started);
+        }
+    }
+
+    @Test
+    public void urgent_lanes_run_first_on_a_busy_worker() throws Exception {
+        try (PriorityScheduler scheduler = PriorityScheduler.create("test", 1, 2)) {
+            CountDownLatch blocked = new CountDownLatch(1);
+            scheduler.execute(0, () -> {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+            scheduler.execute(1, () -> order.add(1));
+            scheduler.execute(0, () -> order.add(0));
+            blocked.countDown();
+            scheduler.submit(1, () -> null).join();
+            assertEquals(List.of(0, 1), order);
+        }
+    }
+
+    @Test
+    public void shutdown_runs_accepted_tasks_and_rejects_later_ones() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            PriorityScheduler scheduler = PriorityScheduler.create("test", 2, 2);
+            List<Promise<Integer>> accepted = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> submitters = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread submitter = new Thread(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        try {
+                            accepted.add(scheduler.submit(i % 2, () -> 1));
+                        } catch (RejectedExecutionException e) {
+                            return;
+                        }
+                    }
+                });
+                submitter.start();
+                submitters.add(submitter);
+            }
+            scheduler.shutdown();
+            for (Thread submitter : submitters) submitter.join();
+            assertTrue(scheduler.awaitTermination(Duration.ofSeconds(10)));
+            for (Promise<Integer> promise : accepted) assertTrue(promise.isDone());
+            try {
+                scheduler.execute(0, () -> { });
+                fail();
+            } catch (RejectedExecutionException ignored) {
+            }
+        }
+    }
+
+    @Test
+    public void close_from_a_task_does_not_wait_for_itself() throws Exception {
+        PriorityScheduler scheduler = PriorityScheduler.create("test", 2, 1);
+        Promise<Boolean> closed = scheduler.submit(0, () -> {
+            scheduler.close();
+            return scheduler.isShutdown();
+        });
+        assertTrue(closed.join());
+        assertTrue(scheduler.awaitTermination(Duration.ofSeconds(10)));
+    }
+
+    @Test
+    public void workers_are_named_daemon_threads() {
+        try (PriorityScheduler scheduler = PriorityScheduler.create("named", 1, 1)) {
+            Thread worker = scheduler.submit(0, Thread::currentThread).join();
+            assertTrue(worker.isDaemon());
+            assertEquals("named::0", worker.getName());
+        }
+    }
+}
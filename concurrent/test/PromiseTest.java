@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.concurrent.test;
+
+import com.vaticle.typedb.common.collection.Either;
+import com.vaticle.typedb.common.concurrent.Promise;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PromiseTest {
+
+    @Test
+    public void continuations_run_in_registration_order() {
+        Promise<Integer> promise = Promise.promise();
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int index = i;
+            promise.onComplete(result -> order.add(index));
+        }
+        assertTrue(promise.complete(1));
+        assertFalse(promise.complete(2));
+        assertEquals(List.of(0, 1, 2, 3, 4), order);
+        assertEquals(Integer.valueOf(1), promise.join());
+    }
+
+    @Test
+    public void long_chains_complete_without_overflowing_the_stack() {
+        Promise<Integer> root = Promise.promise();
+        Promise<Integer> mapped = root;
+        for (int i = 0; i < 100_000; i++) mapped = mapped.map(value -> value + 1);
+        Promise<Integer> flatMapped = root;
+        for (int i = 0; i < 100_000; i++) flatMapped = flatMapped.flatMap(value -> Promise.completed(value + 1));
+        root.complete(0);
+        assertEquals(Integer.valueOf(100_000), mapped.join());
+        assertEquals(Integer.valueOf(100_000), flatMapped.join());
+    }
+
+    @Test
+    public void failures_propagate_until_recovered() {
+        IllegalStateException error = new IllegalStateException();
+        Promise<Integer> failed = Promise.<Integer>completed(1).map(value -> {
+            throw error;
+        });
+        Promise<Integer> mapped = failed.map(value -> value + 1);
+        assertSame(error, mapped.result().second());
+        assertEquals(Integer.valueOf(-1), mapped.recover(e -> -1).join());
+        try {
+            mapped.join();
+            fail();
+        } catch (IllegalStateException e) {
+            assertSame(error, e);
+        }
+    }
+
+    @Test
+    public void recover_runs_on_the_given_executor() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Thread thread = Promise.<Thread>failed(new RuntimeException()).recover(e -> Thread.currentThread(), executor).join();
+            assertTrue(thread != Thread.currentThread());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejected_continuations_fail_their_dependent_promises() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        Promise<Integer> pending = Promise.promise();
+        List<Promise<Integer>> dependents = List.of(
+                Promise.completed(1).map(value -> value + 1, executor),
+                Promise.completed(1).flatMap(value -> Promise.completed(value + 1), executor),
+                Promise.<Integer>failed(new IllegalStateException()).recover(error -> 0, executor),
+                pending.map(value -> value + 1, executor),
+                pending.recover(error -> 0, executor)
+        );
+        pending.complete(1);
+        for (Promise<Integer> dependent : dependents) {
+            assertTrue(dependent.isDone());
+            assertTrue(dependent.result().second() instanceof RejectedExecutionException);
+            try {
+                dependent.join();
+                fail();
+            } catch (RejectedExecutionException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void rejected_actions_without_dependents_are_reported() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        AtomicReference<Throwable> reported = new AtomicReference<>();
+        thread.setUncaughtExceptionHandler((t, e) -> reported.set(e));
+        try {
+            Promise.completed(1).onComplete(result -> fail(), executor);
+        } finally {
+            // the thread group is the default handler, so restore it by clearing ours
+            thread.setUncaughtExceptionHandler(handler == thread.getThreadGroup() ? null : handler);
+        }
+        assertTrue(reported.get() instanceof RejectedExecutionException);
+    }
+
+    @Test
+    public void gather_keeps_the_order_of_its_promises() {
+        Promise<Integer> first = Promise.promise();
+        Promise<Integer> second = Promise.promise();
+        Promise<List<Integer>> gathered = Promise.gather(List.of(first, second));
+        second.complete(2);
+        assertFalse(gathered.isDone());
+        first.complete(1);
+        assertEquals(List.of(1, 2), gathered.join());
+        assertEquals(List.of(), Promise.<Integer>gather(List.of()).join());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void null_results_are_rejected() {
+        Promise.<Integer>promise().complete((Either<Integer, Throwable>) null);
+    }
+
+    @Test
+    public void join_waits_for_another_thread() throws Exception {
+        Promise<String> promise = Promise.promise();
+        Thread completer = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            }
+            promise.complete("done");
+        });
+        completer.start();
+        assertEquals("done", promise.join());
+        completer.join();
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.vaticle.typedb.common.concurrent.test;
+
+import com.vaticle.typedb.common.concurrent.NamedThreadFactory;
+import com.vaticle.typedb.common.concurrent.ThreadSampler;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+public class ThreadSamplerTest {
+
+    @Test
+    public void group_is_the_name_before_the_last_separator() {
+        assertEquals("worker", ThreadSampler.group("worker::0"));
+        assertEquals("Executor::async", ThreadSampler.group("Executor::async::12"));
+        assertEquals("main", ThreadSampler.group("main"));
+        assertEquals("", ThreadSampler.group("::3"));
+        assertEquals("worker:", ThreadSampler.group("worker:::1"));
+        assertEquals("worker", ThreadSampler.group(NamedThreadFactory.create("worker").newThread(() -> { }).getName()));
+    }
+
+    @Test
+    public void close_restores_monitoring_settings() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadCpuTimeSupported() && threads.isThreadContentionMonitoringSupported());
+        com.sun.management.ThreadMXBean extended = threads instanceof com.sun.management.ThreadMXBean &&
+                ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported() ?
+                (com.sun.management.ThreadMXBean) threads : null;
+        boolean cpuTime = threads.isThreadCpuTimeEnabled();
+        boolean contention = threads.isThreadContentionMonitoringEnabled();
+        boolean allocatedMemory = extended != null && extended.isThreadAllocatedMemoryEnabled();
+        try {
+            for (boolean enabled : new boolean[]{false, true}) {
+                threads.setThreadCpuTimeEnabled(enabled);
+                threads.setThreadContentionMonitoringEnabled(enabled);
+                if (extended != null) extended.setThreadAllocatedMemoryEnabled(enabled);
+
+                ThreadSampler sampler = ThreadSampler.start(Duration.ofMillis(10));
+                assertTrue(threads.isThreadCpuTimeEnabled());
+                assertTrue(threads.isThreadContentionMonitoringEnabled());
+                if (extended != null) assertTrue(extended.isThreadAllocatedMemoryEnabled());
+                sampler.close();
+
+                assertEquals(enabled, threads.isThreadCpuTimeEnabled());
+                assertEquals(enabled, threads.isThreadContentionMonitoringEnabled());
+                if (extended != null) assertEquals(enabled, extended.isThreadAllocatedMemoryEnabled());
+            }
+        } finally {
+            threads.setThreadCpuTimeEnabled(cpuTime);
+            threads.setThreadContentionMonitoringEnabled(contention);
+            if (extended != null) extended.setThreadAllocatedMemoryEnabled(allocatedMemory);
+        }
+    }
+
+    @Test
+    public void usage_and_stacks_are_attributed_to_thread_groups() throws InterruptedException {
+        assumeTrue(ManagementFactory.getThreadMXBean().isThreadCpuTimeSupported());
+        try (ThreadSampler sampler = ThreadSampler.start(Duration.ofMillis(5), 1, 16)) {
+            Thread.sleep(20);
+            CountDownLatch stop = new CountDownLatch(1);
+            List<Thread> workers = new ArrayList<>();
+            NamedThreadFactory factory = NamedThreadFactory.create("sampled");
+            for (int i = 0; i < 2; i++) {
+                Thread worker = factory.newThread(() -> {
+                    long sum = 0;
+                    while (stop.getCount() > 0) sum += new long[64].length;
+                    if (sum < 0) throw new IllegalStateException();
+                });
+                worker.start();
+                workers.add(worker);
+            }
+            ThreadSampler.Usage usage = null;
+            boolean stackSampled = false;
+            for (int attempt = 0; attempt < 200 && !(stackSampled && usage != null && usage.cpuNanos() > 0 && usage.threads() == 2); attempt++) {
+                Thread.sleep(10);
+                usage = sampler.usage().get("sampled");
+                stackSampled = sampler.foldedStacks().keySet().stream().anyMatch(stack -> stack.startsWith("sampled;"));
+            }
+            stop.countDown();
+            for (Thread worker : workers) worker.join();
+
+            assertNotNull(usage);
+            assertEquals(2, usage.threads());
+            assertTrue(usage.cpuNanos() > 0);
+            assertTrue(stackSampled);
+            assertFalse(sampler.usage().containsKey("sampled::0"));
+        }
+    }
+}
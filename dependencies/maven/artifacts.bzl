@@ -19,6 +19,8 @@ artifacts = [
   "com.google.code.findbugs:jsr305",
   "commons-io:commons-io",
   "junit:junit",
+  "org.openjdk.jmh:jmh-core",
+  "org.openjdk.jmh:jmh-generator-annprocess",
   "org.slf4j:slf4j-api",
   "org.zeroturnaround:zt-exec",
   "org.yaml:snakeyaml",
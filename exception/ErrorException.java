@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.exception;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * An exception raised with an {@link ErrorMessage} and its parameters. The message is only rendered when requested,
+ * and whether the stack trace is captured is decided per error by {@link ErrorMessage#stackTrace(StackTrace)}, so that
+ * errors raised on expected, high-frequency paths can skip the cost of {@link #fillInStackTrace()}.
+ */
+public class ErrorException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    // only the rendered message is serialized, as errors and parameters need not be serializable
+    private final transient ErrorMessage error;
+    private final transient Object[] parameters;
+    // rendering is idempotent, so a racing thread at worst renders the same message twice
+    private volatile String message;
+
+    public ErrorException(ErrorMessage error, Object... parameters) {
+        this(error, null, parameters);
+    }
+
+    public ErrorException(ErrorMessage error, Throwable cause, Object... parameters) {
+        super(null, cause, true, error.captureStackTrace());
+        this.error = error;
+        this.parameters = parameters;
+        // messages that cannot take the deferred path are rendered now, so that bad parameters fail at the throw site
+        // rather than later, when the exception is logged
+        if (!error.acceptsDeferred(parameters)) this.message = error.render(parameters);
+        error.recordOccurrence();
+    }
+
+    /**
+     * @return the error, or null if this exception was deserialized
+     */
+    public ErrorMessage error() {
+        return error;
+    }
+
+    public Object[] parameters() {
+        return parameters;
+    }
+
+    @Override
+    public String getMessage() {
+        String message = this.message;
+        if (message == null) {
+            message = error.render(parameters);
+            this.message = message;
+        }
+        return message;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        getMessage();
+        out.defaultWriteObject();
+    }
+
+    public static class StackTrace {
+
+        public static final StackTrace ALWAYS = new StackTrace(1);
+        public static final StackTrace NONE = new StackTrace(0);
+
+        private final int sampling;
+
+        private StackTrace(int sampling) {
+            this.sampling = sampling;
+        }
+
+        /**
+         * Capture the stack trace of roughly one in every {@code n} exceptions.
+         */
+        public static StackTrace sampled(int n) {
+            if (n < 1) throw new IllegalArgumentException("Stack trace sampling rate must be positive, but was: " + n);
+            else if (n == 1) return ALWAYS;
+            else return new StackTrace(n);
+        }
+
+        boolean capture() {
+            if (sampling == 1) return true;
+            else if (sampling == 0) return false;
+            else return ThreadLocalRandom.current().nextInt(sampling) == 0;
+        }
+    }
+}
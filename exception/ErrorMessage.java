@@ -17,49 +17,262 @@
 
 package com.vaticle.typedb.common.exception;
 
+import com.vaticle.typedb.common.collection.PersistentMap;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Formattable;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Collections.unmodifiableMap;
 
 public abstract class ErrorMessage {
 
-    private static Map<String, Map<Integer, ErrorMessage>> errors = new HashMap<>();
-    private static int maxCodeNumber = 0;
-    private static int maxCodeDigits = 0;
+    private static final VarHandle OCCURRENCES;
+
+    static {
+        try {
+            OCCURRENCES = MethodHandles.lookup().findVarHandle(ErrorMessage.class, "occurrences", LongAdder.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // replaced as a whole on each registration, so a published registry is never modified
+    private static volatile Registry registry = new Registry(PersistentMap.empty(), 0);
+    private static volatile boolean countOccurrences = false;
 
     private final String codePrefix;
     private final int codeNumber;
     private final String message;
-    private String code = null;
+    private final Template template;
+    private volatile LongAdder occurrences;
+    private volatile String code = null;
+    private volatile ErrorException.StackTrace stackTrace = ErrorException.StackTrace.ALWAYS;
 
     protected ErrorMessage(String codePrefix, int codeNumber, String messagePrefix, String messageBody) {
         this.codePrefix = codePrefix;
         this.codeNumber = codeNumber;
         this.message = messagePrefix + ": " + messageBody;
+        this.template = Template.compile(message);
+        register(this);
+    }
 
-        assert errors.get(codePrefix) == null || errors.get(codePrefix).get(codeNumber) == null;
-        errors.computeIfAbsent(codePrefix, s -> new HashMap<>()).put(codeNumber, this);
-        maxCodeNumber = Math.max(codeNumber, maxCodeNumber);
-        maxCodeDigits = (int) Math.ceil(Math.log10(maxCodeNumber));
+    private static synchronized void register(ErrorMessage error) {
+        Registry current = registry;
+        PersistentMap<Integer, ErrorMessage> prefixed = current.errors.get(error.codePrefix);
+        if (prefixed == null) prefixed = PersistentMap.empty();
+        assert !prefixed.containsKey(error.codeNumber);
+        registry = new Registry(current.errors.plus(error.codePrefix, prefixed.plus(error.codeNumber, error)),
+                                Math.max(current.maxCodeNumber, error.codeNumber));
+    }
+
+    /**
+     * Look up a registered error by its full code, eg. as returned by {@link #code()}, ignoring zero padding.
+     */
+    public static ErrorMessage get(String code) {
+        Registry current = registry;
+        ErrorMessage error = current.byCode().get(code);
+        if (error != null) return error;
+        // codes without the usual zero padding: any registered prefix, followed by only digits
+        for (Map.Entry<String, PersistentMap<Integer, ErrorMessage>> entry : current.errors.entrySet()) {
+            String prefix = entry.getKey();
+            int digits = code.length() - prefix.length();
+            if (digits < 1 || digits > 9 || !code.startsWith(prefix)) continue;
+            boolean numeric = true;
+            for (int i = prefix.length(); i < code.length() && numeric; i++) numeric = Character.isDigit(code.charAt(i));
+            if (!numeric) continue;
+            error = entry.getValue().get(Integer.parseInt(code.substring(prefix.length())));
+            if (error != null) return error;
+        }
+        return null;
+    }
+
+    /**
+     * Enable or disable counting of rendered messages per error code, as reported by {@link #occurrences()}.
+     */
+    public static void countOccurrences(boolean enabled) {
+        countOccurrences = enabled;
+    }
+
+    /**
+     * @return the number of occurrences of each error code that has been rendered at least once while counting
+     */
+    public static Map<String, Long> occurrences() {
+        Map<String, Long> counts = new HashMap<>();
+        for (PersistentMap<Integer, ErrorMessage> prefixed : registry.errors.values()) {
+            for (ErrorMessage error : prefixed.values()) {
+                long count = error.occurrenceCount();
+                if (count > 0) counts.put(error.code(), count);
+            }
+        }
+        return counts;
+    }
+
+    public long occurrenceCount() {
+        LongAdder occurrences = this.occurrences;
+        return occurrences == null ? 0 : occurrences.sum();
+    }
+
+    // the counter is only allocated once an occurrence is counted
+    void recordOccurrence() {
+        if (!countOccurrences) return;
+        LongAdder occurrences = this.occurrences;
+        if (occurrences == null) {
+            OCCURRENCES.compareAndSet(this, null, new LongAdder());
+            occurrences = this.occurrences;
+        }
+        occurrences.increment();
     }
 
     public String code() {
+        String code = this.code;
         if (code != null) return code;
+        code = code(codePrefix, codeNumber, registry.maxCodeNumber);
+        this.code = code;
+        return code;
+    }
 
+    private static String code(String codePrefix, int codeNumber, int maxCodeNumber) {
+        int maxCodeDigits = (int) Math.ceil(Math.log10(maxCodeNumber));
         StringBuilder zeros = new StringBuilder();
         for (int digits = (int) Math.floor(Math.log10(codeNumber)) + 1; digits < maxCodeDigits; digits++) {
             zeros.append("0");
         }
-
-        code = codePrefix + zeros.toString() + codeNumber;
-        return code;
+        return codePrefix + zeros.toString() + codeNumber;
     }
 
     public String message(Object... parameters) {
-        return String.format(toString(), parameters);
+        return appendTo(new StringBuilder(template.length + 16), parameters).toString();
+    }
+
+    public StringBuilder appendTo(StringBuilder builder, Object... parameters) {
+        recordOccurrence();
+        return render(builder, parameters);
+    }
+
+    String render(Object[] parameters) {
+        return render(new StringBuilder(template.length + 16), parameters).toString();
+    }
+
+    private StringBuilder render(StringBuilder builder, Object[] parameters) {
+        if (!template.accepts(parameters)) return builder.append(String.format(toString(), parameters));
+        builder.append('[').append(code()).append("] ");
+        return template.appendTo(builder, parameters);
+    }
+
+    /**
+     * @return true if the parameters fill every slot of the precompiled template, so rendering can safely be deferred
+     */
+    boolean acceptsDeferred(Object[] parameters) {
+        return template.accepts(parameters);
+    }
+
+    boolean captureStackTrace() {
+        return stackTrace.capture();
+    }
+
+    /**
+     * Set how often exceptions raised with this error capture their stack trace, see {@link ErrorException}.
+     */
+    public void stackTrace(ErrorException.StackTrace stackTrace) {
+        this.stackTrace = stackTrace;
     }
 
     @Override
     public String toString() {
         return String.format("[%s] %s", code(), message);
     }
+
+    private static class Registry {
+
+        private final PersistentMap<String, PersistentMap<Integer, ErrorMessage>> errors;
+        private final int maxCodeNumber;
+        private volatile Map<String, ErrorMessage> byCode;
+
+        private Registry(PersistentMap<String, PersistentMap<Integer, ErrorMessage>> errors, int maxCodeNumber) {
+            this.errors = errors;
+            this.maxCodeNumber = maxCodeNumber;
+        }
+
+        // built on the first lookup, as registrations usually all happen before then
+        private Map<String, ErrorMessage> byCode() {
+            Map<String, ErrorMessage> byCode = this.byCode;
+            if (byCode != null) return byCode;
+            Map<String, ErrorMessage> index = new HashMap<>();
+            for (PersistentMap<Integer, ErrorMessage> prefixed : errors.values()) {
+                for (ErrorMessage error : prefixed.values()) {
+                    index.put(code(error.codePrefix, error.codeNumber, maxCodeNumber), error);
+                    index.put(error.code(), error);
+                }
+            }
+            byCode = unmodifiableMap(index);
+            this.byCode = byCode;
+            return byCode;
+        }
+    }
+
+    /**
+     * The message, split once into literal segments around its '%s' slots. Messages using any other conversion, or
+     * rendered with arguments that need more than String.valueOf, fall back to String.format.
+     */
+    private static class Template {
+
+        private final String[] literals;
+        private final int length;
+        private final boolean simple;
+
+        private Template(String[] literals, boolean simple) {
+            this.literals = literals;
+            this.simple = simple;
+            int length = 0;
+            for (String literal : literals) length += literal.length();
+            this.length = length;
+        }
+
+        private static Template compile(String format) {
+            List<String> literals = new ArrayList<>();
+            StringBuilder literal = new StringBuilder();
+            for (int i = 0; i < format.length(); i++) {
+                char c = format.charAt(i);
+                if (c != '%') {
+                    literal.append(c);
+                    continue;
+                }
+                char conversion = i + 1 < format.length() ? format.charAt(++i) : 0;
+                if (conversion == 's') {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                } else if (conversion == '%') {
+                    literal.append('%');
+                } else if (conversion == 'n') {
+                    literal.append(System.lineSeparator());
+                } else {
+                    return new Template(new String[]{format}, false);
+                }
+            }
+            literals.add(literal.toString());
+            return new Template(literals.toArray(new String[0]), true);
+        }
+
+        private boolean accepts(Object[] parameters) {
+            if (!simple || parameters == null || parameters.length < literals.length - 1) return false;
+            for (int i = 0; i < literals.length - 1; i++) {
+                if (parameters[i] instanceof Formattable) return false;
+            }
+            return true;
+        }
+
+        private StringBuilder appendTo(StringBuilder builder, Object[] parameters) {
+            builder.append(literals[0]);
+            for (int i = 1; i < literals.length; i++) {
+                builder.append(parameters[i - 1]).append(literals[i]);
+            }
+            return builder;
+        }
+    }
 }
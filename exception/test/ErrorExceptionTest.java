@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.exception.test;
+
+import com.vaticle.typedb.common.exception.ErrorException;
+import com.vaticle.typedb.common.exception.ErrorMessage;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.MissingFormatArgumentException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ErrorExceptionTest {
+
+    private static final TestError ALWAYS = new TestError(1, "Always '%s'.");
+    private static final TestError NEVER = new TestError(2, "Never '%s'.");
+    private static final TestError SAMPLED = new TestError(3, "Sampled.");
+
+    static {
+        NEVER.stackTrace(ErrorException.StackTrace.NONE);
+        SAMPLED.stackTrace(ErrorException.StackTrace.sampled(4));
+    }
+
+    @Test
+    public void stack_traces_follow_the_error_policy() {
+        assertTrue(new ErrorException(ALWAYS, "x").getStackTrace().length > 0);
+        assertEquals(0, new ErrorException(NEVER, "x").getStackTrace().length);
+        int captured = 0;
+        for (int i = 0; i < 4_000; i++) {
+            if (new ErrorException(SAMPLED).getStackTrace().length > 0) captured++;
+        }
+        assertSame(ErrorException.StackTrace.ALWAYS, ErrorException.StackTrace.sampled(1));
+        assertTrue("captured " + captured + " of 4000 stack traces", captured > 700 && captured < 1300);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sampling_rates_must_be_positive() {
+        ErrorException.StackTrace.sampled(0);
+    }
+
+    @Test
+    public void messages_are_rendered_once_on_demand() {
+        AtomicInteger renders = new AtomicInteger();
+        Object parameter = new Object() {
+            @Override
+            public String toString() {
+                renders.incrementAndGet();
+                return "p";
+            }
+        };
+        ErrorException exception = new ErrorException(ALWAYS, parameter);
+        assertEquals(0, renders.get());
+        assertEquals("[" + ALWAYS.code() + "] Test: Always 'p'.", exception.getMessage());
+        assertEquals("[" + ALWAYS.code() + "] Test: Always 'p'.", exception.getMessage());
+        assertEquals(1, renders.get());
+        assertSame(ALWAYS, exception.error());
+    }
+
+    @Test(expected = MissingFormatArgumentException.class)
+    public void missing_parameters_fail_at_the_throw_site() {
+        new ErrorException(ALWAYS);
+    }
+
+    @Test
+    public void serialization_keeps_the_rendered_message() throws IOException, ClassNotFoundException {
+        Object unserializable = new Object() {
+            @Override
+            public String toString() {
+                return "p";
+            }
+        };
+        ErrorException exception = new ErrorException(NEVER, new IllegalStateException("cause"), unserializable);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(exception);
+        }
+        ErrorException copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (ErrorException) in.readObject();
+        }
+        assertEquals("[" + NEVER.code() + "] Test: Never 'p'.", copy.getMessage());
+        assertEquals("cause", copy.getCause().getMessage());
+        assertNull(copy.error());
+        assertNull(copy.parameters());
+    }
+
+    private static class TestError extends ErrorMessage {
+
+        private TestError(int codeNumber, String messageBody) {
+            super("EXC", codeNumber, "Test", messageBody);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.exception.test;
+
+import com.vaticle.typedb.common.exception.ErrorMessage;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.List;
+import java.util.MissingFormatArgumentException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ErrorMessageTest {
+
+    private static final TestError TWO_SLOTS = new TestError(1, "%s and %s");
+    private static final TestError ESCAPES = new TestError(2, "100%% of %s%n");
+    private static final TestError FORMATTED = new TestError(3, "%d items of %.1f");
+    private static final TestError NO_SLOTS = new TestError(12, "Nothing to fill.");
+
+    @Test
+    public void slots_are_filled_in_order() {
+        assertEquals("[TST01] Test: a and 2", TWO_SLOTS.message("a", 2));
+        assertEquals("[TST01] Test: null and b", TWO_SLOTS.message(null, "b"));
+        assertEquals("[TST12] Test: Nothing to fill.", NO_SLOTS.message());
+    }
+
+    @Test
+    public void escapes_render_as_in_string_format() {
+        assertEquals("[TST02] Test: 100% of x" + System.lineSeparator(), ESCAPES.message("x"));
+        assertEquals(String.format(ESCAPES.toString(), "x"), ESCAPES.message("x"));
+    }
+
+    @Test
+    public void other_conversions_fall_back_to_string_format() {
+        assertEquals("[TST03] Test: 3 items of 0.5", FORMATTED.message(3, 0.5));
+    }
+
+    @Test
+    public void formattable_parameters_fall_back_to_string_format() {
+        Formattable formattable = (Formatter formatter, int flags, int width, int precision) ->
+                formatter.format("formatted");
+        assertEquals("[TST01] Test: formatted and b", TWO_SLOTS.message(formattable, "b"));
+    }
+
+    @Test(expected = MissingFormatArgumentException.class)
+    public void missing_parameters_fail_as_in_string_format() {
+        TWO_SLOTS.message("a");
+    }
+
+    @Test
+    public void appendTo_appends_the_rendered_message() {
+        StringBuilder builder = new StringBuilder("error: ");
+        assertEquals("error: [TST01] Test: a and b", TWO_SLOTS.appendTo(builder, "a", "b").toString());
+    }
+
+    @Test
+    public void errors_are_found_by_code_with_or_without_padding() {
+        assertSame(TWO_SLOTS, ErrorMessage.get("TST01"));
+        assertSame(TWO_SLOTS, ErrorMessage.get("TST1"));
+        assertSame(TWO_SLOTS, ErrorMessage.get("TST001"));
+        assertSame(NO_SLOTS, ErrorMessage.get("TST12"));
+        assertNull(ErrorMessage.get("TST04"));
+        assertNull(ErrorMessage.get("TST"));
+        assertNull(ErrorMessage.get("TST1a"));
+        assertNull(ErrorMessage.get("XYZ01"));
+    }
+
+    @Test
+    public void concurrent_registrations_are_all_published() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String prefix = "REG" + t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int number = 1; number <= 12; number++) new TestError(prefix, number, "Registered.");
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+        for (int t = 0; t < 4; t++) {
+            for (int number = 1; number <= 12; number++) {
+                ErrorMessage error = ErrorMessage.get(String.format("REG%d%02d", t, number));
+                assertEquals(String.format("REG%d%02d", t, number), error.code());
+            }
+        }
+    }
+
+    @Test
+    public void occurrences_are_only_counted_while_enabled() {
+        TestError error = new TestError("OCC", 1, "Counted.");
+        error.message();
+        assertEquals(0, error.occurrenceCount());
+        ErrorMessage.countOccurrences(true);
+        try {
+            error.message();
+            error.appendTo(new StringBuilder());
+        } finally {
+            ErrorMessage.countOccurrences(false);
+        }
+        error.message();
+        assertEquals(2, error.occurrenceCount());
+        assertEquals(Long.valueOf(2), ErrorMessage.occurrences().get(error.code()));
+    }
+
+    private static class TestError extends ErrorMessage {
+
+        private TestError(int codeNumber, String messageBody) {
+            this("TST", codeNumber, messageBody);
+        }
+
+        private TestError(String codePrefix, int codeNumber, String messageBody) {
+            super(codePrefix, codeNumber, "Test", messageBody);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.util;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, sorted set of primitive doubles that answers approximate equality and range queries by binary search.
+ * Approximate equality follows {@link Double#equalsApproximate(double, double, double)}: a stored value v matches a
+ * probe x when |v - x| < epsilon. Comparison by ULP distance is available through {@link #equalsApproximateUlps}.
+ */
+public class DoubleIndex {
+
+    private final double[] values;
+
+    private DoubleIndex(double[] sorted) {
+        this.values = sorted;
+    }
+
+    /**
+     * NaN values are dropped, since they are never approximately equal to anything.
+     */
+    public static DoubleIndex of(double... values) {
+        double[] sorted = Arrays.stream(values).filter(v -> !java.lang.Double.isNaN(v)).sorted().toArray();
+        return new DoubleIndex(sorted);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public double get(int index) {
+        return values[index];
+    }
+
+    public boolean containsApproximate(double probe) {
+        return containsApproximate(probe, Double.EPSILON);
+    }
+
+    public boolean containsApproximate(double probe, double epsilon) {
+        int from = start(0, probe, epsilon);
+        return from < values.length && Double.equalsApproximate(values[from], probe, epsilon);
+    }
+
+    public double[] findApproximate(double probe) {
+        return findApproximate(probe, Double.EPSILON);
+    }
+
+    public double[] findApproximate(double probe, double epsilon) {
+        int from = start(0, probe, epsilon);
+        return Arrays.copyOfRange(values, from, end(from, probe, epsilon));
+    }
+
+    /**
+     * @return the stored values between {@code from} and {@code to}, each bound being inclusive or exclusive
+     */
+    public double[] range(double from, boolean fromInclusive, double to, boolean toInclusive) {
+        int start = lowerBound(from, !fromInclusive);
+        int end = lowerBound(to, toInclusive);
+        return start < end ? Arrays.copyOfRange(values, start, end) : new double[0];
+    }
+
+    /**
+     * @return the stored values within {@code maxUlps} units in the last place of the probe
+     */
+    public double[] findApproximateUlps(double probe, long maxUlps) {
+        if (java.lang.Double.isNaN(probe)) return new double[0];
+        return range(offsetUlps(probe, -maxUlps), true, offsetUlps(probe, maxUlps), true);
+    }
+
+    /**
+     * Batch lookup: for each probe, the number of stored values approximately equal to it.
+     * Probes are answered in sorted order so that consecutive searches narrow the same region of the index.
+     */
+    public int[] countApproximate(double[] probes, double epsilon) {
+        double[] sorted = probes.clone();
+        Arrays.sort(sorted);
+        int[] sortedCounts = new int[sorted.length];
+        int from = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0 && java.lang.Double.compare(sorted[i], sorted[i - 1]) == 0) {
+                sortedCounts[i] = sortedCounts[i - 1];
+            } else {
+                from = start(from, sorted[i], epsilon);
+                sortedCounts[i] = end(from, sorted[i], epsilon) - from;
+            }
+        }
+        int[] counts = new int[probes.length];
+        for (int i = 0; i < probes.length; i++) counts[i] = sortedCounts[Arrays.binarySearch(sorted, probes[i])];
+        return counts;
+    }
+
+    public int[] countApproximate(double[] probes) {
+        return countApproximate(probes, Double.EPSILON);
+    }
+
+    public boolean[] containsApproximate(double[] probes, double epsilon) {
+        int[] counts = countApproximate(probes, epsilon);
+        boolean[] contains = new boolean[probes.length];
+        for (int i = 0; i < counts.length; i++) contains[i] = counts[i] > 0;
+        return contains;
+    }
+
+    public boolean[] containsApproximate(double[] probes) {
+        return containsApproximate(probes, Double.EPSILON);
+    }
+
+    public static boolean equalsApproximateUlps(double first, double second, long maxUlps) {
+        if (java.lang.Double.isNaN(first) || java.lang.Double.isNaN(second)) return false;
+        long distance;
+        try {
+            distance = Math.subtractExact(ordered(first), ordered(second));
+        } catch (ArithmeticException e) {
+            return false;
+        }
+        return distance != Long.MIN_VALUE && Math.abs(distance) <= maxUlps;
+    }
+
+    // binary search for the candidates within [probe - epsilon, probe + epsilon], then trim the edges with the exact
+    // predicate of Double.equalsApproximate, which may disagree with the bounds by rounding
+    private int start(int from, double probe, double epsilon) {
+        int start = lowerBound(from, probe - epsilon, false);
+        while (start < values.length && values[start] < probe && !Double.equalsApproximate(values[start], probe, epsilon)) {
+            start++;
+        }
+        return start;
+    }
+
+    private int end(int from, double probe, double epsilon) {
+        int end = lowerBound(from, probe + epsilon, true);
+        while (end > from && values[end - 1] > probe && !Double.equalsApproximate(values[end - 1], probe, epsilon)) {
+            end--;
+        }
+        return end;
+    }
+
+    private int lowerBound(double bound, boolean inclusive) {
+        return lowerBound(0, bound, inclusive);
+    }
+
+    /**
+     * @return the first index at or after {@code from} whose value is greater than the bound, or greater than or
+     * equal to it when {@code inclusive} is false
+     */
+    private int lowerBound(int from, double bound, boolean inclusive) {
+        int low = from;
+        int high = values.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (values[mid] < bound || (inclusive && values[mid] == bound)) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // maps doubles onto longs whose ordering matches the ordering of the doubles, so that ULP distance is a subtraction
+    private static long ordered(double value) {
+        long bits = java.lang.Double.doubleToLongBits(value);
+        return bits < 0 ? Long.MIN_VALUE - bits : bits;
+    }
+
+    private static double offsetUlps(double value, long ulps) {
+        long limit = ordered(java.lang.Double.POSITIVE_INFINITY);
+        long shifted;
+        try {
+            shifted = Math.max(-limit, Math.min(limit, Math.addExact(ordered(value), ulps)));
+        } catch (ArithmeticException e) {
+            shifted = ulps > 0 ? limit : -limit;
+        }
+        return java.lang.Double.longBitsToDouble(shifted < 0 ? Long.MIN_VALUE - shifted : shifted);
+    }
+}
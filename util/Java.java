@@ -20,6 +20,7 @@ package com.vaticle.typedb.common.util;
 
 public class Java {
     public static Integer UNKNOWN_VERSION = -1;
+    private static final int MAJOR_VERSION = getMajorVersion();
 
     public static Integer getMajorVersion() {
         String version = System.getProperty("java.version");
@@ -27,11 +28,10 @@ public class Java {
             // Java 8 or lower: 1.6.0_23, 1.7.0, 1.7.0_80, 1.8.0_211
             version = version.substring(2, 3);
         } else {
-            // Java 9 or higher: 9.0.1, 11.0.4, 12, 12.0.1
-            int dot = version.indexOf(".");
-            if (dot != -1) {
-                version = version.substring(0, dot);
-            }
+            // Java 9 or higher: 9.0.1, 11.0.4, 12, 12.0.1, 17-internal, 21-ea
+            int digits = 0;
+            while (digits < version.length() && Character.isDigit(version.charAt(digits))) digits++;
+            version = version.substring(0, digits);
         }
         try {
             return Integer.parseInt(version);
@@ -39,4 +39,11 @@ public class Java {
             return Java.UNKNOWN_VERSION;
         }
     }
+
+    /**
+     * @return true if the running JVM is known to be of at least the given major version, as detected once at startup
+     */
+    public static boolean isAtLeast(int majorVersion) {
+        return MAJOR_VERSION >= majorVersion;
+    }
 }
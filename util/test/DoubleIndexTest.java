@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.util.test;
+
+import com.vaticle.typedb.common.util.DoubleIndex;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static java.lang.Double.MAX_VALUE;
+import static java.lang.Double.MIN_VALUE;
+import static java.lang.Double.NEGATIVE_INFINITY;
+import static java.lang.Double.NaN;
+import static java.lang.Double.POSITIVE_INFINITY;
+import static java.lang.Math.nextDown;
+import static java.lang.Math.nextUp;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DoubleIndexTest {
+
+    @Test
+    public void nan_is_dropped_and_never_matches() {
+        DoubleIndex index = DoubleIndex.of(2.0, NaN, 1.0);
+        assertEquals(2, index.size());
+        assertEquals(1.0, index.get(0), 0);
+        assertEquals(2.0, index.get(1), 0);
+        assertFalse(index.containsApproximate(NaN));
+        assertEquals(0, index.findApproximateUlps(NaN, Long.MAX_VALUE).length);
+        assertFalse(DoubleIndex.equalsApproximateUlps(NaN, NaN, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void values_within_epsilon_are_found() {
+        DoubleIndex index = DoubleIndex.of(1.0 + 2e-10, 1.0 + 5e-11, 1.0, 1.0 - 5e-11, 3.0);
+        assertArrayEquals(new double[]{1.0 - 5e-11, 1.0, 1.0 + 5e-11}, index.findApproximate(1.0), 0);
+        assertTrue(index.containsApproximate(3.0 + 5e-11));
+        assertFalse(index.containsApproximate(2.0));
+        assertEquals(5, index.findApproximate(2.0, 1.5).length);
+    }
+
+    @Test
+    public void signed_zeros_are_equal() {
+        DoubleIndex index = DoubleIndex.of(0.0, -0.0, MIN_VALUE, -MIN_VALUE);
+        assertEquals(2, index.findApproximate(-0.0, MIN_VALUE).length);
+        assertTrue(DoubleIndex.equalsApproximateUlps(-0.0, 0.0, 0));
+        assertEquals(2, index.findApproximateUlps(0.0, 0).length);
+        assertEquals(2, index.findApproximateUlps(-0.0, 0).length);
+        assertEquals(2, index.range(-0.0, true, 0.0, true).length);
+        assertEquals(0, index.range(0.0, false, MIN_VALUE, false).length);
+    }
+
+    @Test
+    public void ulp_distance_counts_across_zero() {
+        assertTrue(DoubleIndex.equalsApproximateUlps(1.0, nextUp(1.0), 1));
+        assertFalse(DoubleIndex.equalsApproximateUlps(1.0, nextUp(1.0), 0));
+        assertTrue(DoubleIndex.equalsApproximateUlps(-MIN_VALUE, MIN_VALUE, 2));
+        assertFalse(DoubleIndex.equalsApproximateUlps(-MIN_VALUE, MIN_VALUE, 1));
+        assertFalse(DoubleIndex.equalsApproximateUlps(-MAX_VALUE, MAX_VALUE, Long.MAX_VALUE));
+        assertFalse(DoubleIndex.equalsApproximateUlps(NEGATIVE_INFINITY, POSITIVE_INFINITY, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void ulp_lookups_clamp_at_infinity() {
+        double below = nextDown(1.0), above = nextUp(1.0);
+        DoubleIndex index = DoubleIndex.of(nextDown(nextDown(below)), below, 1.0, above, nextUp(nextUp(above)),
+                                           NEGATIVE_INFINITY, POSITIVE_INFINITY);
+        assertArrayEquals(new double[]{below, 1.0, above}, index.findApproximateUlps(1.0, 2), 0);
+        assertEquals(7, index.findApproximateUlps(0.0, Long.MAX_VALUE).length);
+        assertArrayEquals(new double[]{POSITIVE_INFINITY}, index.findApproximateUlps(MAX_VALUE, 1), 0);
+    }
+
+    @Test
+    public void batched_counts_match_single_lookups() {
+        Random random = new Random(0);
+        double[] values = new double[1_000];
+        for (int i = 0; i < values.length; i++) values[i] = Math.round(random.nextDouble() * 100) / 10.0;
+        values[0] = -0.0;
+        values[1] = NaN;
+        DoubleIndex index = DoubleIndex.of(values);
+        double[] probes = new double[500];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = random.nextBoolean() ? values[random.nextInt(values.length)] : random.nextDouble() * 10;
+        }
+        probes[0] = NaN;
+        probes[1] = 0.0;
+        probes[2] = -0.0;
+        for (double epsilon : new double[]{1e-10, 0.05, 0.5}) {
+            int[] counts = index.countApproximate(probes, epsilon);
+            boolean[] contains = index.containsApproximate(probes, epsilon);
+            for (int i = 0; i < probes.length; i++) {
+                assertEquals(index.findApproximate(probes[i], epsilon).length, counts[i]);
+                assertEquals(index.containsApproximate(probes[i], epsilon), contains[i]);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ package com.vaticle.typedb.common.yaml;
 
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -39,7 +40,28 @@ public abstract class YAML {
         return wrap(new org.yaml.snakeyaml.Yaml().load(inputStream));
     }
 
-    private static YAML wrap(Object yaml) {
+    /**
+     * Load a YAML file through a binary snapshot of its parsed tree. The snapshot is reused when its checksum matches
+     * the source file, and is otherwise (re)written after parsing the source as text. The snapshot is only a cache, so
+     * failing to read or write it falls back to, or keeps, the parsed source.
+     */
+    public static YAML load(Path filePath, Path snapshotPath) throws IOException {
+        long checksum = YAMLSnapshot.checksum(filePath);
+        YAML yaml;
+        try {
+            yaml = YAMLSnapshot.read(snapshotPath, checksum);
+            if (yaml != null) return yaml;
+        } catch (IOException ignored) {
+        }
+        yaml = load(filePath);
+        try {
+            YAMLSnapshot.write(yaml, snapshotPath, checksum);
+        } catch (IOException ignored) {
+        }
+        return yaml;
+    }
+
+    static YAML wrap(Object yaml) {
         if (yaml == null) return null;
         else if (yaml instanceof java.util.Map) {
             assert ((java.util.Map<Object, Object>) yaml).keySet().stream().allMatch(key -> key instanceof java.lang.String);
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.yaml;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.zip.CRC32C;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A compact binary encoding of a parsed YAML tree, which is decoded straight out of a memory-mapped file so that
+ * subsequent loads of the same source skip text parsing entirely.
+ *
+ * Layout: MAGIC (4 bytes), VERSION (1 byte), source checksum (8 bytes), followed by the encoded tree. Each node is a
+ * tag byte followed by its payload; lengths and counts are unsigned varints.
+ */
+public class YAMLSnapshot {
+
+    private static final int MAGIC = 0x59414D4C; // "YAML"
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 8;
+    private static final int MAX_DEPTH = 1000;
+
+    private static final byte NULL = 0;
+    private static final byte MAP = 1;
+    private static final byte LIST = 2;
+    private static final byte STRING = 3;
+    private static final byte INT = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte TRUE = 6;
+    private static final byte FALSE = 7;
+
+    public static long checksum(Path source) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > 0) crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            return (size << 32) ^ crc.getValue();
+        }
+    }
+
+    /**
+     * @return the decoded tree, or null if the snapshot is missing, corrupt, or was taken from a different source
+     */
+    public static YAML read(Path snapshot, long checksum) throws IOException {
+        if (!Files.isRegularFile(snapshot)) return null;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) return null;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.get() != VERSION || buffer.getLong() != checksum) return null;
+            YAML yaml = new Reader(buffer).read();
+            return buffer.hasRemaining() ? null : yaml;
+        } catch (BufferUnderflowException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write the snapshot to a temporary sibling file and move it into place, so concurrent readers never observe a
+     * partially written snapshot.
+     */
+    public static void write(YAML yaml, Path snapshot, long checksum) throws IOException {
+        Path parent = snapshot.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(checksum);
+                write(yaml, out);
+            }
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public static byte[] encode(YAML yaml) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(out)) {
+            write(yaml, data);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static YAML decode(ByteBuffer buffer) {
+        return new Reader(buffer.slice()).read();
+    }
+
+    private static void write(YAML yaml, DataOutputStream out) throws IOException {
+        if (yaml == null) {
+            out.writeByte(NULL);
+        } else if (yaml.isMap()) {
+            out.writeByte(MAP);
+            writeVarInt(yaml.asMap().content().size(), out);
+            for (java.util.Map.Entry<String, YAML> entry : yaml.asMap().content().entrySet()) {
+                writeString(entry.getKey(), out);
+                write(entry.getValue(), out);
+            }
+        } else if (yaml.isList()) {
+            out.writeByte(LIST);
+            writeVarInt(yaml.asList().content().size(), out);
+            for (YAML element : yaml.asList().content()) write(element, out);
+        } else if (yaml.isString()) {
+            out.writeByte(STRING);
+            writeString(yaml.asString().value(), out);
+        } else if (yaml.isInt()) {
+            out.writeByte(INT);
+            out.writeInt(yaml.asInt().value());
+        } else if (yaml.isDouble()) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(yaml.asDouble().value());
+        } else if (yaml.isBoolean()) {
+            out.writeByte(yaml.asBoolean().value() ? TRUE : FALSE);
+        } else {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static void writeString(String string, DataOutputStream out) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        writeVarInt(bytes.length, out);
+        out.write(bytes);
+    }
+
+    private static void writeVarInt(int value, DataOutputStream out) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static class Reader {
+
+        private final ByteBuffer buffer;
+        private byte[] scratch = new byte[64];
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private YAML read() {
+            return YAML.wrap(readObject(0));
+        }
+
+        // decode into the plain objects SnakeYAML produces, which YAML.wrap() then converts
+        private Object readObject(int depth) {
+            if (depth > MAX_DEPTH) throw new IllegalStateException("YAML snapshot nested too deeply");
+            byte tag = buffer.get();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case MAP:
+                    // every entry takes at least a key length and a value tag
+                    int entries = readCount(2);
+                    java.util.Map<String, Object> map = new LinkedHashMap<>(capacity(entries));
+                    for (int i = 0; i < entries; i++) map.put(readString(), readObject(depth + 1));
+                    return map;
+                case LIST:
+                    int size = readCount(1);
+                    java.util.List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) list.add(readObject(depth + 1));
+                    return list;
+                case STRING:
+                    return readString();
+                case INT:
+                    return buffer.getInt();
+                case DOUBLE:
+                    return buffer.getDouble();
+                case TRUE:
+                    return true;
+                case FALSE:
+                    return false;
+                default:
+                    throw new IllegalStateException("Unrecognised YAML snapshot tag: " + tag);
+            }
+        }
+
+        // a count read from disk is only trusted as far as the remaining bytes could hold that many elements
+        private int readCount(int minElementSize) {
+            int count = readVarInt();
+            if (count > buffer.remaining() / minElementSize) {
+                throw new IllegalStateException("YAML snapshot count exceeds its remaining size");
+            }
+            return count;
+        }
+
+        private String readString() {
+            int length = readVarInt();
+            if (length > buffer.remaining()) throw new BufferUnderflowException();
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            buffer.get(scratch, 0, length);
+            return new String(scratch, 0, length, UTF_8);
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) throw new IllegalStateException("Negative length in YAML snapshot");
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed varint in YAML snapshot");
+        }
+
+        private static int capacity(int entries) {
+            return (int) Math.min(Integer.MAX_VALUE, (long) (entries / 0.75f) + 1);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2022 Vaticle
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.vaticle.typedb.common.yaml.test;
+
+import com.vaticle.typedb.common.yaml.YAML;
+import com.vaticle.typedb.common.yaml.YAMLSnapshot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class YAMLSnapshotTest {
+
+    private static final String SOURCE = "server:\n" +
+            "  address: 0.0.0.0:1729\n" +
+            "  threads: 8\n" +
+            "  ratio: 0.75\n" +
+            "  enabled: true\n" +
+            "  missing:\n" +
+            "storage:\n" +
+            "  - data\n" +
+            "  - \"unicode \\u00e9\\u6f22\"\n" +
+            "  - nested:\n" +
+            "      - 1\n" +
+            "      - []\n" +
+            "      - {}\n";
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("yaml-snapshot");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) Files.delete(path);
+        }
+    }
+
+    @Test
+    public void encode_and_decode_preserve_the_tree() {
+        YAML yaml = YAML.load(SOURCE);
+        YAML decoded = YAMLSnapshot.decode(ByteBuffer.wrap(YAMLSnapshot.encode(yaml)));
+        assertEquals(plain(yaml), plain(decoded));
+    }
+
+    @Test
+    public void load_writes_then_reuses_the_snapshot() throws IOException {
+        Path source = Files.writeString(directory.resolve("config.yml"), SOURCE);
+        Path snapshot = directory.resolve("cache").resolve("config.snapshot");
+        YAML parsed = YAML.load(source, snapshot);
+        assertNotNull(YAMLSnapshot.read(snapshot, YAMLSnapshot.checksum(source)));
+        assertEquals(plain(parsed), plain(YAML.load(source, snapshot)));
+    }
+
+    @Test
+    public void snapshots_of_a_changed_source_are_ignored() throws IOException {
+        Path source = Files.writeString(directory.resolve("config.yml"), SOURCE);
+        Path snapshot = directory.resolve("config.snapshot");
+        YAML.load(source, snapshot);
+        Files.writeString(source, "server:\n  threads: 4\n");
+        assertNull(YAMLSnapshot.read(snapshot, YAMLSnapshot.checksum(source)));
+        assertEquals(4, YAML.load(source, snapshot).asMap().get("server").asMap().get("threads").asInt().value());
+    }
+
+    @Test
+    public void corrupt_snapshots_are_ignored() throws IOException {
+        Path source = Files.writeString(directory.resolve("config.yml"), SOURCE);
+        Path snapshot = directory.resolve("config.snapshot");
+        long checksum = YAMLSnapshot.checksum(source);
+        YAMLSnapshot.write(YAML.load(SOURCE), snapshot, checksum);
+        byte[] bytes = Files.readAllBytes(snapshot);
+
+        assertNull(YAMLSnapshot.read(directory.resolve("absent.snapshot"), checksum));
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 1));
+        assertNull(YAMLSnapshot.read(snapshot, checksum));
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length + 1));
+        assertNull(YAMLSnapshot.read(snapshot, checksum));
+        byte[] badMagic = bytes.clone();
+        badMagic[0] ^= 1;
+        Files.write(snapshot, badMagic);
+        assertNull(YAMLSnapshot.read(snapshot, checksum));
+
+        assertEquals(plain(YAML.load(SOURCE)), plain(YAML.load(source, snapshot)));
+        assertNotNull(YAMLSnapshot.read(snapshot, checksum));
+    }
+
+    private static Object plain(YAML yaml) {
+        if (yaml == null) return null;
+        else if (yaml.isMap()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            yaml.asMap().forEach((key, value) -> map.put(key, plain(value)));
+            return map;
+        } else if (yaml.isList()) {
+            List<Object> list = new ArrayList<>();
+            for (YAML element : yaml.asList().content()) list.add(plain(element));
+            return list;
+        } else if (yaml.isString()) return yaml.asString().value();
+        else if (yaml.isInt()) return yaml.asInt().value();
+        else if (yaml.isDouble()) return yaml.asDouble().value();
+        else return yaml.asBoolean().value();
+    }
+}